@@ -0,0 +1,119 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The ActiveSet class is a set of node indices stored as a bitmap, used to
+ * keep track of the nodes that have messages in their queues. Walking it in
+ * index order costs one word read per 64 nodes plus one step per active node.
+ *
+ * Bits in different 64-node blocks live in different words, so threads that
+ * own whole blocks can change the set at the same time.
+ *
+ * @since 2023-05-25
+ */
+public class ActiveSet {
+    private final long[] words;
+
+    /**
+     * Constructs an empty set for the given number of nodes.
+     *
+     * @param size The number of nodes.
+     */
+    public ActiveSet(int size) {
+        words = new long[(size + 63) >>> 6];
+    }
+
+    /**
+     * Adds a node to the set.
+     *
+     * @param index The index of the node.
+     */
+    public void add(int index) {
+        words[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Removes a node from the set.
+     *
+     * @param index The index of the node.
+     */
+    public void remove(int index) {
+        words[index >>> 6] &= ~(1L << index);
+    }
+
+    /**
+     * Checks if a node is in the set.
+     *
+     * @param index The index of the node.
+     * @return True if the node is in the set.
+     */
+    public boolean contains(int index) {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Finds the first node in the set at or after the given index. Nodes added
+     * after the index while walking the set are found as well.
+     *
+     * @param fromIndex The index to start looking at.
+     * @return The index of the node, or -1 if there is none.
+     */
+    public int nextSetBit(int fromIndex) {
+        int wordIndex = fromIndex >>> 6;
+        if (wordIndex >= words.length) {
+            return -1;
+        }
+        long word = words[wordIndex] & (-1L << fromIndex);
+        while (word == 0) {
+            if (++wordIndex == words.length) {
+                return -1;
+            }
+            word = words[wordIndex];
+        }
+        return (wordIndex << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /**
+     * Saves the set.
+     *
+     * @param output Where the set is written.
+     * @throws IOException If writing fails.
+     */
+    public void writeState(DataOutput output) throws IOException {
+        output.writeInt(words.length);
+        for (long word : words) {
+            output.writeLong(word);
+        }
+    }
+
+    /**
+     * Replaces the set with one saved by writeState for the same number of nodes.
+     *
+     * @param input Where the set is read from.
+     * @throws IOException If reading fails or the set is for another number of nodes.
+     */
+    public void readState(DataInput input) throws IOException {
+        int length = input.readInt();
+        if (length != words.length) {
+            throw new IOException("Active set has " + length + " words, expected " + words.length);
+        }
+        for (int i = 0; i < length; i++) {
+            words[i] = input.readLong();
+        }
+    }
+
+    /**
+     * Checks if the set is empty.
+     *
+     * @return True if no node is in the set.
+     */
+    public boolean isEmpty() {
+        for (long word : words) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
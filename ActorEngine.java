@@ -0,0 +1,286 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The ActorEngine class sends the messages of an environment without time
+ * steps. Every node is an actor with a mailbox, and a message moves as soon
+ * as its node gets to run and the node it chooses is free, instead of once
+ * per time step.
+ *
+ * An actor runs on one thread at a time. When it runs it first handles its
+ * mailbox, which holds the messages arriving at the node and the work the
+ * environment hands the node, like a new event or a request to send. Then it
+ * sends the message at the front of its queue: the message chooses its
+ * target, leaves the queue and is put in the mailbox of the target, whose
+ * actor moves it in. A node is busy while its actor runs, to the messages
+ * of other nodes; a message choosing its own node finds it free. A message that
+ * can't move now is tried again when the environment starts its next time
+ * step, so a node with a stuck message doesn't keep a thread spinning.
+ *
+ * Only the actor of a node changes the node. A move changes the message and
+ * the target, so it runs on the actor of the target, and the source has
+ * finished its side in completeSend on its own actor before the message is
+ * posted. The mailbox hands the message from one actor to the next, so what
+ * the source wrote to the message is seen by the target. Node checks that
+ * it is changed by its own actor and fails otherwise.
+ *
+ * The actors are tasks in a ForkJoinPool in asynchronous mode, which runs
+ * many small tasks first in, first out on a few threads with work stealing.
+ * Nothing is ordered between actors, so a run depends on the threads and
+ * isn't repeatable with a seed.
+ *
+ * @since 2023-05-25
+ */
+public class ActorEngine {
+    private final Environment environment;
+    private final ForkJoinPool pool;
+    private final List<ConcurrentLinkedQueue<Runnable>> mailboxes;
+    private final Runnable[] actors;
+    /*1 while an actor is waiting to run or running, only then is it in the pool*/
+    private final AtomicIntegerArray scheduled;
+    private final AtomicIntegerArray running;
+    /*Bitmap of the nodes whose message couldn't move*/
+    private final AtomicLongArray blocked;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final LongAdder moves = new LongAdder();
+    private final ConcurrentHashMap<Integer, Long> requestStarts = new ConcurrentHashMap<>();
+    private final Histogram requestLatency = new Histogram("requestLatencyMicros");
+    private volatile boolean sending;
+
+    /**
+     * Constructs an engine for the nodes of an environment.
+     *
+     * @param environment The environment.
+     * @param threads The number of threads the actors run on.
+     */
+    public ActorEngine(Environment environment, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        int size = environment.getNumberOfNodes();
+        this.environment = environment;
+        this.pool = new ForkJoinPool(threads, ActorThread::new, null, true);
+        this.mailboxes = new ArrayList<>(size);
+        this.actors = new Runnable[size];
+        this.scheduled = new AtomicIntegerArray(size);
+        this.running = new AtomicIntegerArray(size);
+        this.blocked = new AtomicLongArray((size + 63) >>> 6);
+        for (int i = 0; i < size; i++) {
+            int nodeIndex = i;
+            mailboxes.add(new ConcurrentLinkedQueue<>());
+            actors[i] = () -> run(nodeIndex);
+        }
+    }
+
+    /**
+     * Starts sending messages, waking the nodes that have messages in their queues.
+     */
+    public void start() {
+        sending = true;
+        for (int i = 0; i < actors.length; i++) {
+            if (environment.getNode(i).hasMessages()) {
+                wake(i);
+            }
+        }
+    }
+
+    /**
+     * Stops sending messages and waits until every actor has handled its
+     * mailbox, after which the nodes can be read from any thread.
+     *
+     * @return The number of messages that moved since start.
+     * @throws IllegalStateException If an actor failed.
+     */
+    public long stop() {
+        sending = false;
+        while (pending.get() > 0) {
+            LockSupport.parkNanos(100_000);
+        }
+        for (int i = 0; i < blocked.length(); i++) {
+            blocked.set(i, 0);
+        }
+        Throwable cause = failure.getAndSet(null);
+        if (cause != null) {
+            throw new IllegalStateException("An actor failed", cause);
+        }
+        return moves.sumThenReset();
+    }
+
+    /**
+     * Stops the threads of the engine.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    /**
+     * Hands work to the actor of a node, it runs on the actor's thread
+     * before the node sends its next message.
+     *
+     * @param nodeIndex The index of the node.
+     * @param task The work.
+     */
+    public void post(int nodeIndex, Runnable task) {
+        mailboxes.get(nodeIndex).add(task);
+        wake(nodeIndex);
+    }
+
+    /**
+     * Makes sure the actor of a node runs, if it isn't waiting to run already.
+     *
+     * @param nodeIndex The index of the node.
+     */
+    public void wake(int nodeIndex) {
+        if (scheduled.compareAndSet(nodeIndex, 0, 1)) {
+            pending.incrementAndGet();
+            pool.execute(actors[nodeIndex]);
+        }
+    }
+
+    /**
+     * Wakes the nodes whose message couldn't move, called once per time step.
+     */
+    public void retryBlocked() {
+        for (int word = 0; word < blocked.length(); word++) {
+            if (blocked.get(word) == 0) {
+                continue;
+            }
+            long bits = blocked.getAndSet(word, 0);
+            while (bits != 0) {
+                wake(word * 64 + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    /**
+     * Checks if a node is busy, which is when its actor is running on
+     * another thread than the one asking.
+     *
+     * @param nodeIndex The index of the node.
+     * @return True if the node is busy.
+     */
+    public boolean isBusy(int nodeIndex) {
+        if (running.get(nodeIndex) == 0) {
+            return false;
+        }
+        return !runsActorOf(nodeIndex);
+    }
+
+    /**
+     * Checks if the current thread is running the actor of a node, the only
+     * thread allowed to change the node.
+     *
+     * @param nodeIndex The index of the node.
+     * @return True if the actor of the node is running on this thread.
+     */
+    public boolean runsActorOf(int nodeIndex) {
+        Thread thread = Thread.currentThread();
+        return thread instanceof ActorThread && ((ActorThread) thread).nodeIndex == nodeIndex;
+    }
+
+    /**
+     * Notes the wall-clock time a request is sent, so its latency is
+     * recorded when it returns.
+     *
+     * @param request The request, registered already.
+     */
+    public void requestSent(Request request) {
+        requestStarts.put(request.getId(), System.nanoTime());
+    }
+
+    /**
+     * Gets the wall-clock time from sending requests until they returned
+     * with their event, in microseconds.
+     *
+     * @return The latency histogram.
+     */
+    public Histogram getRequestLatency() {
+        return requestLatency;
+    }
+
+    private void run(int nodeIndex) {
+        ConcurrentLinkedQueue<Runnable> mailbox = mailboxes.get(nodeIndex);
+        Node node = environment.getNode(nodeIndex);
+        ActorThread thread = (ActorThread) Thread.currentThread();
+        boolean more = false;
+        thread.nodeIndex = nodeIndex;
+        running.set(nodeIndex, 1);
+        try {
+            for (Runnable task = mailbox.poll(); task != null; task = mailbox.poll()) {
+                task.run();
+            }
+            if (sending) {
+                more = send(node) && node.hasMessages();
+            }
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+        } finally {
+            running.set(nodeIndex, 0);
+            thread.nodeIndex = -1;
+            scheduled.set(nodeIndex, 0);
+            /*Work posted after the mailbox was emptied found the actor still scheduled*/
+            if (more || !mailbox.isEmpty()) {
+                wake(nodeIndex);
+            }
+            pending.decrementAndGet();
+        }
+    }
+
+    /**
+     * Sends the message at the front of the queue of a node.
+     *
+     * @return False if the message couldn't move and waits for the next time step.
+     */
+    private boolean send(Node node) {
+        Message message = node.nextMessage();
+        if (message == null) {
+            return true;
+        }
+        Node target = message.selectTarget();
+        if (target == null) {
+            int nodeIndex = node.getIndex();
+            blocked.getAndAccumulate(nodeIndex >>> 6, 1L << nodeIndex, (bits, bit) -> bits | bit);
+            if (Metrics.ENABLED) {
+                environment.getMetrics().blockedSends.increment();
+            }
+            return false;
+        }
+        node.completeSend();
+        moves.increment();
+        post(target.getIndex(), () -> arrive(message, target));
+        return true;
+    }
+
+    private void arrive(Message message, Node target) {
+        message.moveTo(target);
+        if (message instanceof Request && ((Request) message).isRequestReturned()) {
+            Long start = requestStarts.remove(((Request) message).getId());
+            if (start != null) {
+                requestLatency.record((System.nanoTime() - start) / 1000);
+            }
+        }
+    }
+
+    /**
+     * A thread of the pool, which knows the node whose actor it runs.
+     */
+    private static class ActorThread extends ForkJoinWorkerThread {
+        private int nodeIndex = -1;
+
+        ActorThread(ForkJoinPool pool) {
+            super(pool);
+        }
+    }
+}
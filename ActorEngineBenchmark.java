@@ -0,0 +1,70 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The ActorEngineBenchmark class compares the throughput of the actors with
+ * the time steps of the sequential loop and the parallel tick engine. It
+ * simulates the same topology with each of them and prints the wall-clock
+ * time, the number of times a message moved from one node to another, the
+ * moves per second and the events found. The actors are run once for every
+ * given step length, since the step length sets how fast events and requests
+ * come in while the actors send, and the wall-clock latency of the requests
+ * that returned is printed for them as well.
+ *
+ * The tick runs use the seed and are repeatable, the actor runs aren't.
+ *
+ * Usage: java ActorEngineBenchmark topologyFile [timeSteps] [threads] [seed] [stepMicros...]
+ *
+ * @since 2023-05-25
+ */
+public class ActorEngineBenchmark {
+    public static void main(String[] args) throws IOException {
+        Path topologyFile = Path.of(args[0]);
+        int timeSteps = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+        long[] stepMicros = {0, 100};
+        if (args.length > 4) {
+            stepMicros = new long[args.length - 4];
+            for (int i = 4; i < args.length; i++) {
+                stepMicros[i - 4] = Long.parseLong(args[i]);
+            }
+        }
+
+        run("sequential ticks", topologyFile, timeSteps, seed, 0, -1);
+        run(threads + " thread ticks", topologyFile, timeSteps, seed, threads, -1);
+        for (long step : stepMicros) {
+            run(threads + " thread actors, " + step + " us steps", topologyFile, timeSteps, seed, threads, step);
+        }
+    }
+
+    /**
+     * Runs one simulation and prints what it measured.
+     *
+     * @param stepMicros The least length of a time step for the actors, or -1 to send in time steps.
+     */
+    private static void run(String name, Path topologyFile, int timeSteps, long seed, int threads, long stepMicros)
+            throws IOException {
+        Environment environment = new Environment(
+                TopologyFiles.read(topologyFile, Environment.DEFAULT_RADIO_RANGE), seed);
+        environment.setResultSink(ResultSink.NONE);
+        if (stepMicros >= 0) {
+            environment.setActorMode(threads, stepMicros * 1000);
+        } else {
+            environment.setParallelism(threads);
+        }
+        long start = System.nanoTime();
+        environment.simulate(timeSteps);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long moves = environment.getNumberOfMoves();
+        System.out.printf("%s: %.3f s, %d moves, %.0f moves/s, %d found events%n",
+                name, seconds, moves, moves / seconds, environment.getNumberOfFoundEvents());
+        ActorEngine actors = environment.getActorEngine();
+        if (actors != null) {
+            Histogram latency = actors.getRequestLatency();
+            System.out.printf("  request latency: p50 %d us, p95 %d us over %d requests%n",
+                    latency.percentile(50), latency.percentile(95), latency.getCount());
+        }
+        environment.setParallelism(0);
+    }
+}
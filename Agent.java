@@ -1,3 +1,6 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -13,12 +16,24 @@ public class Agent extends Message {
     /**
      * All the visited nodes of the agent.
      */
-    private ArrayList<Node> visitedNodes = new ArrayList<>();
+    private VisitedSet visitedNodes;
 
     /**
      * The routingTable of the Agent which contains events.
      */
-    private HashMap<Integer, Routing> routingTable = new HashMap<>();
+    private RoutingTable routingTable = new IntRoutingTable();
+
+    /**
+     * The number of hops the agent has made. The routingTable stores distances
+     * as they would have been at hop zero, so the real distance of an entry is
+     * the stored distance plus hops and a hop doesn't have to touch the entries.
+     */
+    private int hops;
+
+    /**
+     * Buffer the neighbours are copied into when choosing where to move.
+     */
+    private int[] candidates = new int[0];
 
     /**
      * This is the constructor for Agent. To be able to create an Agent it
@@ -31,45 +46,132 @@ public class Agent extends Message {
      */
     public Agent(Node node, int maxDuration, int eventID) {
         super(node, maxDuration, eventID);
-        visitedNodes.add(node);
+        visitedNodes = new VisitedSet(maxDuration + 1);
+        visitedNodes.add(node.getIndex());
+    }
+
+    /**
+     * Sets the agent up to start over from the given node, keeping the memory
+     * of its visited nodes and routingTable so a pooled agent allocates nothing.
+     *
+     * @param node The node where agent starts.
+     * @param maxDuration The life of the agent.
+     * @param eventID   The event that agent will spread.
+     */
+    @Override
+    public void reset(Node node, int maxDuration, int eventID) {
+        super.reset(node, maxDuration, eventID);
+        visitedNodes.clear();
+        visitedNodes.add(node.getIndex());
+        routingTable.clear();
+        hops = 0;
+    }
+
+    /**
+     * Restores an agent saved by writeState.
+     *
+     * @param input Where the agent is read from.
+     * @param environment The environment the agent is in.
+     * @return The agent.
+     * @throws IOException If reading fails.
+     */
+    public static Agent restore(DataInput input, Environment environment) throws IOException {
+        Agent agent = new Agent(environment.getNode(0), 0, 0);
+        agent.readState(input, environment);
+        return agent;
+    }
+
+    @Override
+    protected void writeState(DataOutput output) throws IOException {
+        super.writeState(output);
+        output.writeInt(hops);
+        visitedNodes.writeState(output);
+        routingTable.writeState(output);
+    }
+
+    @Override
+    protected void readState(DataInput input, Environment environment) throws IOException {
+        super.readState(input, environment);
+        hops = input.readInt();
+        visitedNodes.readState(input);
+        routingTable.readState(input);
     }
 
     /**
-     * This method moves the agent from a node to the other. It starts by checking
+     * Called when the agent is dropped from a queue at the end of its life,
+     * it goes back to the pool of the environment.
+     */
+    @Override
+    public void expire() {
+        if (Metrics.ENABLED) {
+            currentNode.getEnvironment().getMetrics().agentHops.record(hops);
+        }
+        currentNode.getEnvironment().releaseAgent(this);
+    }
+
+    /**
+     * This method chooses where the agent moves. It starts by checking
      * the neighbours of the current node. It chooses a random neighbour node.
-     * If the agent hasn't been there, and it isn't busy it moves there and turns
-     * the busy status true. All events get increased distance and agent loses
-     * a life. Agent and the node gets updated.
+     * If the agent hasn't been there, and it isn't busy it is chosen.
+     *
+     * The neighbours are drawn with a partial Fisher-Yates shuffle of a copy
+     * in the agent's own buffer, stopping at the first one that can be chosen,
+     * so the neighbours of the node are never reordered.
      *
-     * @return If the random chosen neighbour isn't busy and hasn't been visited
-     * true is returned otherwise false
+     * @return The random chosen neighbour that isn't busy and hasn't been
+     * visited, or null if there is none.
      */
-    public boolean send() {
-        ArrayList<Node> neighbours = currentNode.getNeighbours();
+    @Override
+    public Node selectTarget() {
+        Topology topology = currentNode.getEnvironment().getTopology();
+        if (candidates.length < topology.getMaxDegree()) {
+            candidates = new int[topology.getMaxDegree()];
+        }
+        int remaining = topology.copyNeighbours(currentNode.getIndex(), candidates);
+        SplitMixRandom random = currentNode.getRandom();
 
-        Collections.shuffle(neighbours);
+        claimsTarget = true;
+        while (remaining > 0) {
+            int drawn = random.nextInt(remaining);
+            int candidate = candidates[drawn];
+            candidates[drawn] = candidates[--remaining];
 
-        for (Node neighbour : neighbours) {
-            if (!visitedNodes.contains(neighbour) &
+            Node neighbour = currentNode.getEnvironment().getNode(candidate);
+            if (!visitedNodes.contains(candidate) &
                     !neighbour.getBusyStatus()) {
-                visitedNodes.add(currentNode);
-                currentNode.setBusyStatus(true);
-                this.currentNode = neighbour;
+                return neighbour;
+            }
+        }
+        return null;
+    }
 
-                /*Increase the distance for each entry in the routingTable*/
-                for (Routing routing : routingTable.values()) {
-                    routing.increaseDistance();
-                }
+    /**
+     * This method moves the agent to the chosen neighbour, which becomes busy.
+     * All events get increased distance, by counting the hop, and agent loses
+     * a life. Agent and the node gets updated. The node the agent leaves isn't
+     * changed here, it is made busy by completeSend when it sends the agent.
+     *
+     * @param target The neighbour chosen by selectTarget.
+     */
+    @Override
+    public void moveTo(Node target) {
+        visitedNodes.add(currentNode.getIndex());
+        this.currentNode = target;
 
-                /*Decrease the duration time of the agent, also lifetime*/
-                decreaseDurationTime();
+        /*One more hop increases the distance of every entry in the routingTable*/
+        hops++;
 
-                currentNode.insertMessage(this);
-                updateTable(routingTable, currentNode.getRoutingTable());
-                return true;
-            }
+        /*Decrease the duration time of the agent, also lifetime*/
+        decreaseDurationTime();
+
+        currentNode.insertMessage(this);
+        updateTable(routingTable, currentNode.getRoutingTable());
+        currentNode.limitRoutingTable();
+
+        RetentionPolicy retention = currentNode.getEnvironment().getRetention();
+        if (routingTable.size() > retention.getEvictionSize()) {
+            routingTable.evict(retention.getMaxEntries(), RetentionPolicy.Eviction.WORST_DISTANCE);
         }
-        return false;
     }
 
 
@@ -79,31 +181,57 @@ public class Agent extends Message {
      *
      * The information that gets exchanged is events that one of the routing
      * doesn't have and if one of the routings have shorter distance to the
-     * same event.
+     * same event. The distances in the agent routing are relative to hop zero
+     * and get the hops of the agent added when they are read.
+     *
+     * Events both routings have are settled in one walk over the node routing,
+     * entries are overwritten in their slots. The agent routing is only walked
+     * when it has events the node routing doesn't have.
+     *
+     * Expired events aren't exchanged, they stay until the environment
+     * removes them. The node entries that are written count as used.
      *
      * @param agent The agent that contains information to exchange.
      * @param node The node that contains information to exchange.
      */
-    public void updateTable(HashMap<Integer, Routing> agent, HashMap<Integer, Routing> node) {
-        for (Map.Entry<Integer, Routing> entry : node.entrySet()) {
-            int eventID = entry.getKey();
-            Routing nodeRouting = entry.getValue();
-            Routing agentRouting = agent.get(eventID);
-
-            if (agentRouting == null || nodeRouting.getDistance() <= agentRouting.getDistance()) {
-                agent.put(eventID, new Routing(eventID, nodeRouting.getDistance(), nodeRouting.getNextNode()));
+    public void updateTable(RoutingTable agent, RoutingTable node) {
+        int firstLiveEvent = currentNode.getEnvironment().getFirstLiveEvent();
+        int time = currentNode.getEnvironment().getTime();
+        int agentSize = agent.size();
+        int shared = 0;
+
+        for (int slot = node.nextSlot(0); slot != RoutingTable.NO_SLOT; slot = node.nextSlot(slot + 1)) {
+            int eventID = node.eventAt(slot);
+            if (eventID < firstLiveEvent) {
+                continue;
+            }
+            int nodeDistance = node.distanceAt(slot);
+            int agentSlot = agent.slotOf(eventID);
+
+            if (agentSlot == RoutingTable.NO_SLOT) {
+                agent.put(eventID, nodeDistance - hops, node.nextNodeAt(slot));
+            } else {
+                shared++;
+                int agentDistance = agent.distanceAt(agentSlot) + hops;
+                if (nodeDistance <= agentDistance) {
+                    agent.putAt(agentSlot, nodeDistance - hops, node.nextNodeAt(slot));
+                } else {
+                    node.putAt(slot, agentDistance, agent.nextNodeAt(agentSlot));
+                    node.touch(slot, time);
+                }
             }
         }
 
-        for (Map.Entry<Integer, Routing> entry : agent.entrySet()) {
-            int eventID = entry.getKey();
-            Routing agentRouting = entry.getValue();
-            Routing nodeRouting = node.get(eventID);
+        /*The node routing already had every event of the agent*/
+        if (shared == agentSize) {
+            return;
+        }
 
-            if (nodeRouting == null || agentRouting.getDistance() < nodeRouting.getDistance()) {
-                node.put(eventID, new Routing(eventID, agentRouting.getDistance(), agentRouting.getNextNode()));
+        for (int slot = agent.nextSlot(0); slot != RoutingTable.NO_SLOT; slot = agent.nextSlot(slot + 1)) {
+            int eventID = agent.eventAt(slot);
+            if (eventID >= firstLiveEvent && node.slotOf(eventID) == RoutingTable.NO_SLOT) {
+                node.touch(node.put(eventID, agent.distanceAt(slot) + hops, agent.nextNodeAt(slot)), time);
             }
         }
     }
 }
-
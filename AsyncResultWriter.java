@@ -0,0 +1,173 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * The AsyncResultWriter class writes found events, one per line, on a thread
+ * of its own so the simulation doesn't wait for the output. The results are
+ * handed over through a bounded queue and written in batches with one flush
+ * per batch. If the writer falls behind by a whole queue the simulation
+ * waits for it instead of using more memory.
+ *
+ * @since 2023-05-25
+ */
+public class AsyncResultWriter implements ResultSink {
+    private static final int QUEUE_CAPACITY = 4096;
+    private static final int BATCH_SIZE = 256;
+
+    /*Put in the queue by close to tell the writer thread to stop*/
+    private static final FoundEvent END = new FoundEvent(-1, -1, 0, 0, 0);
+
+    private final BlockingQueue<FoundEvent> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Writer output;
+    private final boolean closeOutput;
+    private final Thread thread;
+    private volatile IOException failure;
+    private boolean closed;
+
+    /**
+     * Constructs a writer that writes to a stream, for example System.out.
+     * The stream is flushed but not closed when the writer is closed.
+     *
+     * @param stream The stream to write to.
+     */
+    public AsyncResultWriter(OutputStream stream) {
+        this(new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8)), false);
+    }
+
+    /**
+     * Constructs a writer that writes to a file, replacing what was in it.
+     *
+     * @param file The file to write to.
+     * @throws IOException If the file can't be opened.
+     */
+    public AsyncResultWriter(Path file) throws IOException {
+        this(Files.newBufferedWriter(file, StandardCharsets.UTF_8), true);
+    }
+
+    private AsyncResultWriter(Writer output, boolean closeOutput) {
+        this.output = output;
+        this.closeOutput = closeOutput;
+        this.thread = new Thread(this::writeLoop, "result-writer");
+        thread.start();
+    }
+
+    /**
+     * Queues a found event to be written, waits if the queue is full.
+     *
+     * @param result The found event.
+     */
+    @Override
+    public void accept(FoundEvent result) {
+        if (closed) {
+            throw new IllegalStateException("Writer is closed");
+        }
+        putUninterruptibly(result);
+    }
+
+    /**
+     * Writes out the queued results and stops the writer thread.
+     *
+     * @throws UncheckedIOException If writing failed.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        putUninterruptibly(END);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Writing results failed", failure);
+        }
+    }
+
+    private void putUninterruptibly(FoundEvent result) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(result);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Takes batches from the queue and writes them until END comes. After a
+     * failure the results are still taken so the simulation never blocks.
+     */
+    private void writeLoop() {
+        ArrayList<FoundEvent> batch = new ArrayList<>(BATCH_SIZE);
+        boolean running = true;
+        while (running) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                continue;
+            }
+            queue.drainTo(batch, BATCH_SIZE - 1);
+            for (FoundEvent result : batch) {
+                if (result == END) {
+                    running = false;
+                } else if (failure == null) {
+                    write(result);
+                }
+            }
+            batch.clear();
+            flush();
+        }
+        if (closeOutput) {
+            try {
+                output.close();
+            } catch (IOException e) {
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    private void write(FoundEvent result) {
+        try {
+            output.write(result.toString());
+            output.write(System.lineSeparator());
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void flush() {
+        if (failure == null) {
+            try {
+                output.flush();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+}
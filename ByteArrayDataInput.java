@@ -0,0 +1,150 @@
+import java.io.DataInput;
+import java.io.EOFException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The ByteArrayDataInput class is a DataInput that reads from a byte array
+ * written by ByteArrayDataOutput or DataOutputStream, reading an int in one
+ * step without locking.
+ *
+ * @since 2023-05-25
+ */
+public class ByteArrayDataInput implements DataInput {
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final byte[] bytes;
+    private final int limit;
+    private int position;
+
+    /**
+     * Constructs an input that reads the first bytes of an array.
+     *
+     * @param bytes The bytes.
+     * @param length The number of bytes to read.
+     */
+    public ByteArrayDataInput(byte[] bytes, int length) {
+        if (length < 0 || length > bytes.length) {
+            throw new IllegalArgumentException("Length out of range: " + length);
+        }
+        this.bytes = bytes;
+        this.limit = length;
+    }
+
+    /**
+     * Gets the number of bytes that haven't been read.
+     *
+     * @return The number of bytes.
+     */
+    public int remaining() {
+        return limit - position;
+    }
+
+    private void require(int count) throws EOFException {
+        if (limit - position < count) {
+            throw new EOFException();
+        }
+    }
+
+    @Override
+    public void readFully(byte[] b) throws EOFException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws EOFException {
+        require(len);
+        System.arraycopy(bytes, position, b, off, len);
+        position += len;
+    }
+
+    @Override
+    public int skipBytes(int n) {
+        int skipped = Math.max(0, Math.min(n, limit - position));
+        position += skipped;
+        return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws EOFException {
+        return readByte() != 0;
+    }
+
+    @Override
+    public byte readByte() throws EOFException {
+        require(1);
+        return bytes[position++];
+    }
+
+    @Override
+    public int readUnsignedByte() throws EOFException {
+        return readByte() & 0xFF;
+    }
+
+    @Override
+    public short readShort() throws EOFException {
+        require(2);
+        short v = (short) (((bytes[position] & 0xFF) << 8) | (bytes[position + 1] & 0xFF));
+        position += 2;
+        return v;
+    }
+
+    @Override
+    public int readUnsignedShort() throws EOFException {
+        return readShort() & 0xFFFF;
+    }
+
+    @Override
+    public char readChar() throws EOFException {
+        return (char) readShort();
+    }
+
+    @Override
+    public int readInt() throws EOFException {
+        require(Integer.BYTES);
+        int v = (int) INT.get(bytes, position);
+        position += Integer.BYTES;
+        return v;
+    }
+
+    @Override
+    public long readLong() throws EOFException {
+        require(Long.BYTES);
+        long v = (long) LONG.get(bytes, position);
+        position += Long.BYTES;
+        return v;
+    }
+
+    @Override
+    public float readFloat() throws EOFException {
+        return Float.intBitsToFloat(readInt());
+    }
+
+    @Override
+    public double readDouble() throws EOFException {
+        return Double.longBitsToDouble(readLong());
+    }
+
+    /**
+     * Not supported, the checkpoints contain no lines of text.
+     */
+    @Override
+    public String readLine() {
+        throw new UnsupportedOperationException("readLine");
+    }
+
+    /**
+     * Reads a string written by ByteArrayDataOutput.writeUTF.
+     */
+    @Override
+    public String readUTF() throws EOFException {
+        int length = readUnsignedShort();
+        require(length);
+        String s = new String(bytes, position, length, StandardCharsets.UTF_8);
+        position += length;
+        return s;
+    }
+}
@@ -0,0 +1,93 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The CheckpointWriter class writes checkpoints of an environment to a file
+ * in the background. The simulation only stops to copy its state into memory,
+ * writing the copy to disk happens on a thread of its own while the
+ * simulation goes on. If the previous checkpoint is still being written when
+ * the next one is taken, the simulation waits for it.
+ *
+ * @since 2023-05-25
+ */
+public class CheckpointWriter {
+    private final Path file;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> pending;
+
+    /**
+     * Constructs a writer that keeps the latest checkpoint in a file.
+     *
+     * @param file The file.
+     */
+    public CheckpointWriter(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Takes a checkpoint of the environment and starts writing it. Must be
+     * called between two time steps.
+     *
+     * @param environment The environment.
+     * @throws UncheckedIOException If writing the previous checkpoint failed.
+     */
+    public void submit(Environment environment) {
+        awaitPending();
+        byte[] checkpoint = Checkpoints.capture(environment);
+        pending = executor.submit(() -> {
+            Checkpoints.write(checkpoint, file);
+            return null;
+        });
+    }
+
+    /**
+     * Waits for the last checkpoint to be written and stops the thread.
+     *
+     * @throws UncheckedIOException If writing the last checkpoint failed.
+     */
+    public void close() {
+        try {
+            awaitPending();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private void awaitPending() {
+        if (pending == null) {
+            return;
+        }
+        Future<?> previous = pending;
+        pending = null;
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    previous.get();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw new UncheckedIOException("Writing checkpoint failed: " + file, (IOException) cause);
+            }
+            throw new IllegalStateException("Writing checkpoint failed: " + file, cause);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * The Checkpoints class turns the state of an environment into the bytes of
+ * a checkpoint file and back. A checkpoint file is a magic number and a
+ * version, the state written by Environment.writeState, and a CRC32 of all
+ * that so a damaged file is noticed.
+ *
+ * Files are written to a temporary file first and then moved over the old
+ * checkpoint, so a crash while writing leaves the previous checkpoint.
+ *
+ * @since 2023-05-25
+ */
+public final class Checkpoints {
+    /**
+     * The first four bytes of a checkpoint file, "RRCP" in ASCII.
+     */
+    public static final int MAGIC = 0x52524350;
+    private static final int VERSION = 9;
+
+    private Checkpoints() {
+    }
+
+    /**
+     * Copies the state of an environment into the bytes of a checkpoint.
+     * Must be called between two time steps.
+     *
+     * @param environment The environment.
+     * @return The bytes of the checkpoint.
+     */
+    public static byte[] capture(Environment environment) {
+        ByteArrayDataOutput output = new ByteArrayDataOutput(1 << 16);
+        try {
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            environment.writeState(output);
+        } catch (IOException e) {
+            throw new IllegalStateException("Writing to memory failed", e);
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Writes the bytes of a checkpoint to a file, replacing the file only
+     * when everything has been written.
+     *
+     * @param checkpoint The bytes from capture.
+     * @param file The file.
+     * @throws IOException If the file can't be written.
+     */
+    public static void write(byte[] checkpoint, Path file) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(checkpoint);
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer body = ByteBuffer.wrap(checkpoint);
+            while (body.hasRemaining()) {
+                channel.write(body);
+            }
+            ByteBuffer trailer = ByteBuffer.allocate(Long.BYTES).putLong(crc.getValue()).flip();
+            while (trailer.hasRemaining()) {
+                channel.write(trailer);
+            }
+            channel.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a checkpoint file and restores the environment in it.
+     *
+     * @param file The file.
+     * @return The environment, at the time step the checkpoint was taken.
+     * @throws IOException If the file can't be read or isn't a valid checkpoint.
+     */
+    public static Environment read(Path file) throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        if (data.length < 2 * Integer.BYTES + Long.BYTES) {
+            throw new IOException("Checkpoint is too short: " + file);
+        }
+        int length = data.length - Long.BYTES;
+        CRC32 crc = new CRC32();
+        crc.update(data, 0, length);
+        if (crc.getValue() != ByteBuffer.wrap(data, length, Long.BYTES).getLong()) {
+            throw new IOException("Checkpoint is damaged, the checksum doesn't match: " + file);
+        }
+        return restore(data, length);
+    }
+
+    /**
+     * Restores the environment in the bytes of a checkpoint.
+     *
+     * @param checkpoint The bytes from capture.
+     * @return The environment, at the time step the checkpoint was taken.
+     * @throws IOException If the bytes aren't a valid checkpoint.
+     */
+    public static Environment restore(byte[] checkpoint) throws IOException {
+        return restore(checkpoint, checkpoint.length);
+    }
+
+    private static Environment restore(byte[] data, int length) throws IOException {
+        ByteArrayDataInput input = new ByteArrayDataInput(data, length);
+        if (input.readInt() != MAGIC) {
+            throw new IOException("Not a checkpoint");
+        }
+        int version = input.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+        Environment environment = Environment.readState(input);
+        if (input.remaining() != 0) {
+            throw new IOException("Unexpected data after the checkpoint");
+        }
+        return environment;
+    }
+}
@@ -1,6 +1,9 @@
-import java.io.File;
-import java.io.FileNotFoundException;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * The Environment class represents an environment(network) with nodes and events.
@@ -12,33 +15,163 @@ import java.util.*;
  */
 
 public class Environment {
-    public static void main(String[] args) throws FileNotFoundException {
+    public static void main(String[] args) throws IOException {
         int simulationTime = 10000;
 
-        File inputFile = new File(args[0]);
-        Scanner data = new Scanner(inputFile);
-        Environment environment = new Environment(data);
+        int radioRange = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_RADIO_RANGE;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 0;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : new SplittableRandom().nextLong();
+        String resumeFile = System.getProperty("rumor.resume");
+        Environment environment = resumeFile != null
+                ? Checkpoints.read(Path.of(resumeFile))
+                : new Environment(TopologyFiles.read(Path.of(args[0]), radioRange), seed);
+        environment.setParallelism(threads);
+        int actorThreads = Integer.getInteger("rumor.actors.threads", 0);
+        if (actorThreads > 0) {
+            environment.setActorMode(actorThreads, Long.getLong("rumor.actors.stepMicros", 100) * 1000);
+        }
+        if (resumeFile == null) {
+            environment.setRetention(new RetentionPolicy(Integer.getInteger("rumor.retention.maxEntries", 0),
+                    Integer.getInteger("rumor.retention.maxAge", 0),
+                    RetentionPolicy.Eviction.parse(System.getProperty("rumor.retention.eviction", "lru"))));
+            environment.setWalkStrategy(new WalkStrategy(
+                    WalkStrategy.Kind.parse(System.getProperty("rumor.walk", "uniform")),
+                    Integer.getInteger("rumor.walk.window", WalkStrategy.DEFAULT_WINDOW)));
+            if (Boolean.getBoolean("rumor.cache")) {
+                environment.setLocationCache(new LocationCache(Integer.getInteger("rumor.cache.ttl", 2000),
+                        Integer.getInteger("rumor.cache.maxEntries", 64)));
+            }
+        }
+        CheckpointWriter checkpointWriter = null;
+        String checkpointFile = System.getProperty("rumor.checkpoint.file");
+        if (checkpointFile != null) {
+            checkpointWriter = new CheckpointWriter(Path.of(checkpointFile));
+            environment.setCheckpointing(checkpointWriter, Integer.getInteger("rumor.checkpoint.interval", 1000));
+        }
+        EventFileSource eventSource = null;
+        String eventFile = System.getProperty("rumor.ingest.file");
+        if (eventFile != null) {
+            EventIngestion ingestion = new EventIngestion(environment.getTopology(),
+                    Integer.getInteger("rumor.ingest.capacity", EventIngestion.DEFAULT_CAPACITY));
+            environment.setIngestion(ingestion);
+            eventSource = new EventFileSource(Path.of(eventFile), ingestion, Boolean.getBoolean("rumor.ingest.follow"));
+        }
+        ResultSink results = new AsyncResultWriter(System.out);
+        environment.setResultSink(results);
+        MetricsCsvWriter metricsWriter = null;
+        if (Metrics.ENABLED) {
+            metricsWriter = new MetricsCsvWriter(Path.of(System.getProperty("rumor.metrics.file", "metrics.csv")));
+            environment.exportMetrics(metricsWriter, Integer.getInteger("rumor.metrics.interval", 1000));
+        }
         String information;
-        for (int i = 0; i < simulationTime; i++) {
-            environment.performRumorRouting();
+        try {
+            environment.simulate(Math.max(0, simulationTime - environment.getTime()));
+        } finally {
+            results.close();
+            if (eventSource != null) {
+                eventSource.close();
+            }
+            if (checkpointWriter != null) {
+                checkpointWriter.close();
+            }
+            if (metricsWriter != null) {
+                metricsWriter.close();
+            }
         }
         information = environment.toString();
         System.out.println(information);
     }
 
+    /**
+     * The radio range used when none is given, nodes within this distance are neighbours.
+     */
+    public static final int DEFAULT_RADIO_RANGE = 15;
+
+    /**
+     * The probability that an event happens at a node in one time step.
+     */
+    public static final double EVENT_PROBABILITY = 1.0 / 10000;
+
+    /**
+     * The number of steps an agent takes when none is given.
+     */
+    public static final int DEFAULT_AGENT_DURATION = 50;
+
+    /**
+     * The number of steps a request takes when none is given.
+     */
+    public static final int DEFAULT_REQUEST_DURATION = 45;
+
+    /**
+     * The number of nodes that send requests when none is given.
+     */
+    public static final int DEFAULT_REQUEST_NODES = 4;
+
+    /**
+     * Requests are sent from the request nodes every this many time steps.
+     */
+    private static final int REQUEST_INTERVAL = 400;
+
     /*New changed*/
-    private Random random = new Random();
+    private long seed;
+    private SplitMixRandom random;
     private int eventIdCounter;
     private int numberOfNodes;
     private int numberOfSentRequests;
     private int numberOfFoundEvent;
+    private long numberOfMoves;
     private int time;
     private ArrayList<Node> requestNodes = new ArrayList<>();
-    private ArrayList<Request> sentRequest = new ArrayList<>();
+    private RequestRegistry requestRegistry = new RequestRegistry();
+    private Pool<Agent> agentPool = new Pool<>();
+    private Pool<Request> requestPool = new Pool<>();
     private ArrayList<Node> nodes = new ArrayList<>();
-    private int agentDuration = 50;
-    private int requestDuration = 45;
-    private int numOfRequestNodes = 4;
+    private int agentDuration;
+    private int requestDuration;
+    private int numOfRequestNodes;
+    private Topology topology;
+    private ParallelTickEngine tickEngine;
+    private ActorEngine actorEngine;
+    private long stepNanos;
+    private ActiveSet activeNodes;
+    private EventSchedule eventSchedule;
+    private EventIngestion ingestion;
+    private int numberOfIngestedEvents;
+    private int[] eventNodes = new int[16];
+    private Metrics metrics = new Metrics();
+    private MetricsCsvWriter metricsWriter;
+    private int metricsInterval;
+    private int nextMetricsTime;
+    private CheckpointWriter checkpointWriter;
+    private int checkpointInterval;
+    private int nextCheckpointTime;
+    private RetentionPolicy retention = RetentionPolicy.UNBOUNDED;
+    private WalkStrategy walkStrategy = WalkStrategy.UNIFORM;
+    /**
+     * The time step of every event, indexed by event ID.
+     */
+    private int[] eventTimes = new int[16];
+    /**
+     * The oldest event that hasn't expired. Events get their IDs in the order
+     * they happen, so every event with a lower ID has expired.
+     */
+    private int firstLiveEvent;
+    private int nextExpiryTime = Integer.MAX_VALUE;
+    private int expiredEntries;
+    /**
+     * The regions of a partitioned simulation, null when this environment
+     * simulates all nodes.
+     */
+    private Partition partition;
+    private int region;
+    private PartitionLink partitionLink;
+    /**
+     * The nodes made busy by requests this time step before the messages are
+     * sent, which the other regions have to know about.
+     */
+    private int[] claims = new int[16];
+    private int numberOfClaims;
+    private boolean recordingClaims;
 
 
     /**
@@ -48,41 +181,85 @@ public class Environment {
      * @param input A Scanner object
      */
     public Environment(Scanner input) {
-        this.numberOfNodes = input.nextInt();
+        this(input, DEFAULT_RADIO_RANGE, false);
+    }
 
-        /*Move to the next line after reading the number of nodes*/
-        input.nextLine();
+    /**
+     * Constructs an Environment object by reading input from a Scanner, with
+     * the given radio range and way of finding neighbours.
+     *
+     * @param input A Scanner object
+     * @param radioRange The distance within which two nodes are neighbours.
+     * @param pairwiseNeighbourScan True to use the reference scan that compares every
+     *                              pair of nodes instead of the spatial grid.
+     */
+    public Environment(Scanner input, int radioRange, boolean pairwiseNeighbourScan) {
+        this(input, radioRange, pairwiseNeighbourScan, new SplittableRandom().nextLong());
+    }
 
-        for (int i = 0; i < this.numberOfNodes; i++) {
-            String line = input.nextLine();
-            String[] lineArray = line.split(",");
-            Position position = new Position(Integer.parseInt(lineArray[0]), Integer.parseInt(lineArray[1]));
-            Node node = new Node(position);
-            nodes.add(node);
-        }
-        setupNeighbours();
-        setupRequestNodes();
+    /**
+     * Constructs an Environment object by reading input from a Scanner, with
+     * the given radio range, way of finding neighbours and seed.
+     *
+     * All randomness of the simulation comes from the seed. The environment
+     * and every node get their own stream, split from the seed in a fixed
+     * order, so two runs with the same seed give the same result and the
+     * nodes can draw numbers on different threads without sharing a generator.
+     *
+     * @param input A Scanner object
+     * @param radioRange The distance within which two nodes are neighbours.
+     * @param pairwiseNeighbourScan True to use the reference scan that compares every
+     *                              pair of nodes instead of the spatial grid.
+     * @param seed The seed of the simulation.
+     */
+    public Environment(Scanner input, int radioRange, boolean pairwiseNeighbourScan, long seed) {
+        this(Topology.read(input, radioRange, pairwiseNeighbourScan), seed);
     }
 
     /**
-     * Finds all neighbours node and sets up the neighbours for each node.
+     * Constructs an Environment object on a topology that has already been
+     * read, with the default durations and number of request nodes.
+     *
+     * @param topology The positions and neighbours of the nodes.
+     * @param seed The seed of the simulation.
      */
-    private void setupNeighbours() {
-        for (int nodeIndex = 0; nodeIndex < this.numberOfNodes; nodeIndex++) {
-            ArrayList<Node> neighbours = new ArrayList<>();
-            Node currentNode = nodes.get(nodeIndex);
-            for (int otherIndex = 0; otherIndex < this.numberOfNodes; otherIndex++) {
-                Node otherNodes = nodes.get(otherIndex);
-                if (!currentNode.getPosition().equals(otherNodes.getPosition())) {
-                    double distance = currentNode.getPosition().distance(otherNodes.getPosition());
-                    if (distance <= 15) {
-                        neighbours.add(otherNodes);
-                    }
-                }
-            }
-            /*set the neighbours to the node*/
-            currentNode.insertNeighbours(neighbours);
+    public Environment(Topology topology, long seed) {
+        this(topology, seed, DEFAULT_AGENT_DURATION, DEFAULT_REQUEST_DURATION, DEFAULT_REQUEST_NODES);
+    }
+
+    /**
+     * Constructs an Environment object on a topology that has already been
+     * read. The topology never changes, so many environments can share one,
+     * also on different threads.
+     *
+     * @param topology The positions and neighbours of the nodes.
+     * @param seed The seed of the simulation.
+     * @param agentDuration The number of steps an agent takes.
+     * @param requestDuration The number of steps a request takes before it is sent again or given up.
+     * @param numOfRequestNodes The number of nodes that send requests.
+     */
+    public Environment(Topology topology, long seed, int agentDuration, int requestDuration, int numOfRequestNodes) {
+        if (agentDuration < 1 || requestDuration < 1) {
+            throw new IllegalArgumentException("Durations must be positive: " + agentDuration + ", " + requestDuration);
         }
+        if (numOfRequestNodes < 0) {
+            throw new IllegalArgumentException("Number of request nodes must not be negative: " + numOfRequestNodes);
+        }
+        this.seed = seed;
+        this.agentDuration = agentDuration;
+        this.requestDuration = requestDuration;
+        this.numOfRequestNodes = numOfRequestNodes;
+        SplitMixRandom seedRandom = new SplitMixRandom(seed);
+        this.random = seedRandom.split();
+        this.topology = topology;
+        this.numberOfNodes = topology.size();
+        for (int i = 0; i < this.numberOfNodes; i++) {
+            Node node = new Node(topology.getPosition(i), i, this, seedRandom.split());
+            nodes.add(node);
+        }
+        activeNodes = new ActiveSet(this.numberOfNodes);
+        setupRequestNodes();
+        eventSchedule = new EventSchedule(nodes, EVENT_PROBABILITY, time);
     }
 
     /**
@@ -107,58 +284,876 @@ public class Environment {
     private void generateEvent(Node node) {
         /*Create a new event with the currently time step*/
         Event event = new Event(eventIdCounter, time);
+        if (eventIdCounter == eventTimes.length) {
+            eventTimes = Arrays.copyOf(eventTimes, eventIdCounter * 2);
+        }
+        eventTimes[eventIdCounter] = time;
         eventIdCounter++;
         /*Node's method that can insert new event, and it's creation time*/
-        node.insertEvent(event, agentDuration);
+        if (!owns(node.getIndex())) {
+            return;
+        }
+        if (actorEngine != null) {
+            actorEngine.post(node.getIndex(), () -> node.insertEvent(event, agentDuration));
+        } else {
+            node.insertEvent(event, agentDuration);
+        }
+    }
+
+    /**
+     * Runs the rumor routing algorithm for the given number of time steps.
+     * When no message is on its way and no request waits to be handled, the
+     * time steps until the next event or the next time requests are sent are
+     * skipped, since nothing happens in them. In a partitioned simulation the
+     * regions agree on the next time step, the earliest one of any region.
+     *
+     * @param timeSteps The number of time steps to run.
+     */
+    public void simulate(int timeSteps) {
+        if (actorEngine != null) {
+            simulateActors(timeSteps);
+            return;
+        }
+        int endTime = time + timeSteps;
+        while (time < endTime) {
+            int nextTime = nextBusyTime(endTime);
+            if (partitionLink != null) {
+                nextTime = partitionLink.agreeOnTime(nextTime);
+            }
+            time = nextTime;
+            if (time == endTime) {
+                break;
+            }
+            performRumorRouting();
+        }
+    }
+
+    /**
+     * Runs the given number of time steps while the actors send the messages.
+     * A time step lasts at least the step length given to setActorMode, and
+     * none are skipped, since the actors keep sending in between. When the
+     * time steps are done the actors finish the work they were handed, so
+     * the nodes can be read again.
+     */
+    private void simulateActors(int timeSteps) {
+        int endTime = time + timeSteps;
+        actorEngine.start();
+        try {
+            while (time < endTime) {
+                long stepStart = System.nanoTime();
+                performRumorRouting();
+                long remaining = stepNanos - (System.nanoTime() - stepStart);
+                if (remaining > 0) {
+                    LockSupport.parkNanos(remaining);
+                }
+            }
+        } finally {
+            numberOfMoves += actorEngine.stop();
+            for (Node node : nodes) {
+                if (node.hasMessages()) {
+                    activeNodes.add(node.getIndex());
+                } else {
+                    activeNodes.remove(node.getIndex());
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the next time step where something happens, which is the current
+     * one as long as a message is on its way or a request waits to be handled.
+     *
+     * @param endTime The time step to look up to.
+     * @return The time step, at least the current time step and at most the end time.
+     */
+    private int nextBusyTime(int endTime) {
+        if (requestRegistry.hasReports() || !activeNodes.isEmpty()) {
+            return time;
+        }
+        return nextActiveTime(endTime);
+    }
+
+    /**
+     * Finds the next time step where something happens without any message
+     * on its way, which is the next event, drawn or submitted, or the next
+     * time requests are sent. The ingestion is asked last, so it only waits
+     * for the events before that time step.
+     *
+     * @param endTime The time step to look up to.
+     * @return The time step, at least the current time step and at most the end time.
+     */
+    private int nextActiveTime(int endTime) {
+        int nextTime = Math.min(endTime, eventSchedule.peekTime());
+        if (eventIdCounter != 0) {
+            int nextRequestTime = (time + REQUEST_INTERVAL - 1) / REQUEST_INTERVAL * REQUEST_INTERVAL;
+            nextTime = Math.min(nextTime, nextRequestTime);
+        }
+        if (ingestion != null) {
+            nextTime = ingestion.nextTime(nextTime);
+        }
+        return Math.max(time, nextTime);
     }
 
     /**
      * Runs the rumor routing algorithm.
      */
     public void performRumorRouting() {
+        long tickStart = Metrics.ENABLED ? System.nanoTime() : 0;
 
-        if (eventIdCounter != 0 && time % 400 == 0) {
+        TickPhaseEvent phase;
+        if (retention.getMaxAge() > 0) {
+            phase = new TickPhaseEvent(TickPhaseEvent.EVENT_EXPIRY, time);
+            phase.begin();
+            expireEvents();
+            phase.commit();
+        }
+
+        /*Requests only ask for events that haven't expired*/
+        phase = new TickPhaseEvent(TickPhaseEvent.REQUEST_INJECTION, time);
+        phase.begin();
+        recordingClaims = partitionLink != null;
+        if (eventIdCounter > firstLiveEvent && time % REQUEST_INTERVAL == 0) {
             for (Node requestNode : requestNodes) {
-                Request request = new Request(requestNode, requestDuration, random.nextInt(eventIdCounter));
+                int requestedEvent = firstLiveEvent + random.nextInt(eventIdCounter - firstLiveEvent);
+                if (owns(requestNode.getIndex()) && requestRegistry.answer(requestNode, requestedEvent, time)) {
+                    /*Answered from the location cache or by a search on its way, so not sent*/
+                    continue;
+                }
                 this.numberOfSentRequests++;
-                sentRequest.add(request);
-                requestNode.insertMessage(request);
+                if (!owns(requestNode.getIndex())) {
+                    /*Sent by the region of the node, which gets the same number*/
+                    requestRegistry.skipId();
+                    continue;
+                }
+                Request request = newRequest(requestNode, requestDuration, requestedEvent);
+                requestRegistry.register(request);
+                if (actorEngine != null) {
+                    actorEngine.requestSent(request);
+                }
+                queueMessage(requestNode, request);
+                RequestEvent.emit(RequestEvent.INJECTED, request.getId(), request.getEventID(), requestNode);
             }
         }
+        phase.commit();
 
-        Iterator<Request> requestIterator = sentRequest.iterator();
+        phase = new TickPhaseEvent(TickPhaseEvent.REQUEST_BOOKKEEPING, time);
+        phase.begin();
+        numberOfFoundEvent += requestRegistry.processReports(requestDuration, time);
+        recordingClaims = false;
+        phase.commit();
 
-        while (requestIterator.hasNext()) {
-            Request request = requestIterator.next();
-            if (request.isRequestReturned()) {
-                sentRequest.remove(request);
-                numberOfFoundEvent++;
-                break;
-            }else if (request.getDurationTime() == 0 && !request.isSentTwice()) {
-                request.resendingRequest(requestDuration);
-            } else if (request.isSentTwice()) {
-                requestIterator.remove();
+        /*The nodes that get an event this time step, in node order*/
+        phase = new TickPhaseEvent(TickPhaseEvent.EVENT_GENERATION, time);
+        phase.begin();
+        if (ingestion != null) {
+            /*Submitted events come before the drawn ones*/
+            for (int nodeIndex = ingestion.pollDue(time); nodeIndex >= 0; nodeIndex = ingestion.pollDue(time)) {
+                generateEvent(nodes.get(nodeIndex));
+                numberOfIngestedEvents++;
             }
         }
-
-        for (Node node : nodes) {
-            if (random.nextInt(10000) == 1) {
-                generateEvent(node);
+        int numberOfEvents = 0;
+        for (int nodeIndex = nextDueNode(); nodeIndex >= 0; nodeIndex = nextDueNode()) {
+            if (numberOfEvents == eventNodes.length) {
+                eventNodes = Arrays.copyOf(eventNodes, numberOfEvents * 2);
             }
-            node.sendMessage();
+            eventNodes[numberOfEvents++] = nodeIndex;
+        }
+        if (partitionLink != null) {
+            numberOfEvents = partitionLink.exchangeEvents(claims, numberOfClaims, eventNodes, numberOfEvents);
+            numberOfClaims = 0;
         }
+        if (tickEngine != null || actorEngine != null) {
+            for (int i = 0; i < numberOfEvents; i++) {
+                generateEvent(nodes.get(eventNodes[i]));
+            }
+        }
+        phase.commit();
+
+        phase = new TickPhaseEvent(TickPhaseEvent.MESSAGE_SENDING, time);
+        phase.begin();
+        if (actorEngine != null) {
+            /*The actors send all the time, only the messages that couldn't move are tried again*/
+            actorEngine.retryBlocked();
+        } else if (tickEngine == null) {
+            numberOfMoves += sendMessages(numberOfEvents);
+        } else {
+            numberOfMoves += tickEngine.sendMessages();
+        }
+        phase.commit();
 
+        phase = new TickPhaseEvent(TickPhaseEvent.BUSY_RESET, time);
+        phase.begin();
         updateTime();
+        phase.commit();
+
+        if (Metrics.ENABLED) {
+            metrics.tickNanos.record(System.nanoTime() - tickStart);
+            if (metricsWriter != null && time >= nextMetricsTime) {
+                if (actorEngine == null) {
+                    /*The actors are changing the tables*/
+                    metrics.sampleRoutingTables(nodes);
+                }
+                metricsWriter.write(time, metrics);
+                metrics.reset();
+                nextMetricsTime = (time / metricsInterval + 1) * metricsInterval;
+            }
+        }
+
+        if (checkpointWriter != null && time >= nextCheckpointTime) {
+            checkpointWriter.submit(this);
+            nextCheckpointTime = (time / checkpointInterval + 1) * checkpointInterval;
+        }
+    }
+
+    /**
+     * Moves on the oldest event that hasn't expired, and every expiry
+     * interval removes the expired events from the tables of all nodes.
+     */
+    private void expireEvents() {
+        int oldestLiveTime = time - retention.getMaxAge();
+        while (firstLiveEvent < eventIdCounter && eventTimes[firstLiveEvent] < oldestLiveTime) {
+            firstLiveEvent++;
+        }
+        if (time >= nextExpiryTime) {
+            int firstKept = firstLiveEvent;
+            for (Node node : nodes) {
+                if (actorEngine != null) {
+                    actorEngine.post(node.getIndex(), () -> addExpiredEntries(node.expireBefore(firstKept)));
+                } else {
+                    expiredEntries += node.expireBefore(firstKept);
+                }
+            }
+            nextExpiryTime = time + retention.getExpiryInterval();
+        }
+    }
+
+    private synchronized void addExpiredEntries(int entries) {
+        expiredEntries += entries;
+    }
+
+    /**
+     * Removes the node with the next event if it is due this time step. The
+     * actors use the random streams of the nodes, so with actors the
+     * following event is drawn from the random of the environment.
+     *
+     * @return The index of the node, or -1 if no more events happen in this time step.
+     */
+    private int nextDueNode() {
+        return actorEngine != null ? eventSchedule.pollDue(time, random) : eventSchedule.pollDue(time, nodes);
+    }
+
+    /**
+     * Lets the nodes send their messages one after the other, in node order.
+     * Only nodes with messages in their queue and nodes that get an event are
+     * visited. A node that gets an event gets it right before it sends, like
+     * when every node was visited.
+     *
+     * @param numberOfEvents The number of nodes in eventNodes that get an event.
+     * @return The number of messages that moved.
+     */
+    private int sendMessages(int numberOfEvents) {
+        int moved = 0;
+        int event = 0;
+        int nodeIndex = activeNodes.nextSetBit(0);
+        while (nodeIndex >= 0 || event < numberOfEvents) {
+            if (event < numberOfEvents && (nodeIndex < 0 || eventNodes[event] <= nodeIndex)) {
+                nodeIndex = eventNodes[event++];
+                generateEvent(nodes.get(nodeIndex));
+            }
+            Node node = nodes.get(nodeIndex);
+            if (node.sendMessage()) {
+                moved++;
+            }
+            if (!node.hasMessages()) {
+                activeNodes.remove(nodeIndex);
+            }
+            nodeIndex = activeNodes.nextSetBit(nodeIndex + 1);
+        }
+        return moved;
+    }
+
+    /**
+     * Creates an agent, using one from the pool if there is one.
+     *
+     * @param node The node where agent starts.
+     * @param maxDuration The life of the agent.
+     * @param eventID The event that agent will spread.
+     * @return The agent.
+     */
+    public Agent newAgent(Node node, int maxDuration, int eventID) {
+        Agent agent = agentPool.acquire();
+        if (agent == null) {
+            return new Agent(node, maxDuration, eventID);
+        }
+        agent.reset(node, maxDuration, eventID);
+        return agent;
+    }
+
+    /**
+     * Gives back an agent that has reached the end of its life.
+     *
+     * @param agent The agent, which must not be in any queue.
+     */
+    public void releaseAgent(Agent agent) {
+        agentPool.release(agent);
+    }
+
+    /**
+     * Creates a request, using one from the pool if there is one.
+     *
+     * @param startNode The start node.
+     * @param lifeLength Life length for request.
+     * @param requestedEvent The event that is searched for.
+     * @return The request.
+     */
+    private Request newRequest(Node startNode, int lifeLength, int requestedEvent) {
+        Request request = requestPool.acquire();
+        if (request == null) {
+            return new Request(startNode, lifeLength, requestedEvent);
+        }
+        request.reset(startNode, lifeLength, requestedEvent);
+        return request;
+    }
+
+    /**
+     * Gives back a request that is finished.
+     *
+     * @param request The request, which must not be in any queue or the registry.
+     */
+    public void releaseRequest(Request request) {
+        requestPool.release(request);
+    }
+
+    /**
+     * Marks a node as having messages in its queue, so it is visited when
+     * the messages are sent.
+     *
+     * @param nodeIndex The index of the node.
+     */
+    public void activate(int nodeIndex) {
+        if (actorEngine != null) {
+            actorEngine.wake(nodeIndex);
+            return;
+        }
+        activeNodes.add(nodeIndex);
+        if (recordingClaims) {
+            /*Only requests are queued while recording, and queuing makes the node busy*/
+            if (numberOfClaims == claims.length) {
+                claims = Arrays.copyOf(claims, numberOfClaims * 2);
+            }
+            claims[numberOfClaims++] = nodeIndex;
+        }
+    }
+
+    /**
+     * Puts a message in the queue of a node. With actors the node's actor
+     * queues it, otherwise it is queued right away.
+     *
+     * @param node The node.
+     * @param message The message, which is at the node.
+     */
+    public void queueMessage(Node node, Message message) {
+        if (actorEngine != null) {
+            actorEngine.post(node.getIndex(), () -> node.insertMessage(message));
+        } else {
+            node.insertMessage(message);
+        }
+    }
+
+    /**
+     * Checks if a node belongs to the region this environment simulates.
+     *
+     * @param nodeIndex The index of the node.
+     * @return True if the node is in the region, always true when the simulation isn't partitioned.
+     */
+    public boolean owns(int nodeIndex) {
+        return partition == null || partition.regionOf(nodeIndex) == region;
+    }
+
+    /**
+     * Makes this environment simulate one region of a partitioned simulation,
+     * where every region runs in its own process. The environment keeps all
+     * nodes, but only the nodes of the region get events, send requests and
+     * hold messages. The messages are sent by the ParallelTickEngine, which
+     * exchanges the messages crossing into other regions through the link.
+     *
+     * Every region starts from the same seed, so the random streams of the
+     * environment and the nodes are the same in every process. Given the
+     * same seed the regions together give the same results as one
+     * environment with the parallel engine.
+     *
+     * Must be called before the first time step. Checkpointing isn't
+     * supported, and the metrics only cover the region.
+     *
+     * @param partition The regions of the nodes.
+     * @param region The region of this environment.
+     * @param link The connection to the other regions.
+     * @param threads The number of threads of the engine.
+     */
+    public void partition(Partition partition, int region, PartitionLink link, int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        if (region < 0 || region >= partition.regions()) {
+            throw new IllegalArgumentException("Region out of range: " + region);
+        }
+        if (ingestion != null || requestRegistry.getLocationCache() != null) {
+            throw new IllegalStateException("Ingesting events or a location cache in a partitioned simulation "
+                    + "isn't supported");
+        }
+        this.partition = partition;
+        this.region = region;
+        this.partitionLink = link;
+        eventSchedule.retainRegion(partition, region);
+        eventNodes = new int[numberOfNodes];
+        setParallelism(threads);
+    }
+
+    /**
+     * Gets the registry of the requests sent from this environment.
+     *
+     * @return The request registry.
+     */
+    public RequestRegistry getRequestRegistry() {
+        return requestRegistry;
+    }
+
+    /**
+     * Writes a message so readMessage can restore it, in a checkpoint or in
+     * another process.
+     *
+     * @param output Where the message is written.
+     * @param message The message.
+     * @throws IOException If writing fails.
+     */
+    public static void writeMessage(DataOutput output, Message message) throws IOException {
+        output.writeBoolean(message instanceof Agent);
+        message.writeState(output);
     }
 
     /**
-     * Increase the time step of the program.
+     * Restores a message written by writeMessage in this environment. A
+     * request that was attached to a registry is attached to the registry
+     * of this environment.
+     *
+     * @param input Where the message is read from.
+     * @return The message.
+     * @throws IOException If reading fails.
+     */
+    public Message readMessage(DataInput input) throws IOException {
+        return input.readBoolean()
+                ? Agent.restore(input, this)
+                : Request.restore(input, this, requestRegistry);
+    }
+
+    /**
+     * Sets where the events found by requests go, they are printed on
+     * standard output by default.
+     *
+     * @param resultSink The sink for the found events.
+     */
+    public void setResultSink(ResultSink resultSink) {
+        requestRegistry.setResultSink(resultSink);
+    }
+
+    /**
+     * Writes the metrics to a CSV file every given number of time steps, and
+     * starts a new interval each time. Only has an effect when metrics are
+     * turned on, see Metrics.
+     *
+     * @param writer The writer of the CSV file.
+     * @param interval The number of time steps between writes.
+     */
+    public void exportMetrics(MetricsCsvWriter writer, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be positive: " + interval);
+        }
+        this.metricsWriter = writer;
+        this.metricsInterval = interval;
+        this.nextMetricsTime = (time / interval + 1) * interval;
+        metrics.reset();
+    }
+
+    /**
+     * Sets how much routing information the nodes keep, they keep everything
+     * by default. Events that have expired under an earlier policy stay expired.
+     *
+     * @param retention The retention policy.
+     */
+    public void setRetention(RetentionPolicy retention) {
+        if (retention == null) {
+            throw new IllegalArgumentException("Retention policy must not be null");
+        }
+        this.retention = retention;
+        for (Node node : nodes) {
+            node.getRoutingTable().trackUse(retention.tracksUse());
+        }
+        nextExpiryTime = retention.getMaxAge() == 0 ? Integer.MAX_VALUE : time;
+    }
+
+    /**
+     * Sets how requests choose a neighbour when their node has no route to
+     * their event, the uniform walk by default.
+     *
+     * @param walkStrategy The walk.
+     */
+    public void setWalkStrategy(WalkStrategy walkStrategy) {
+        if (walkStrategy == null) {
+            throw new IllegalArgumentException("Walk strategy must not be null");
+        }
+        this.walkStrategy = walkStrategy;
+    }
+
+    /**
+     * Gets how requests choose a neighbour when their node has no route to their event.
+     *
+     * @return The walk.
+     */
+    public WalkStrategy getWalkStrategy() {
+        return walkStrategy;
+    }
+
+    /**
+     * Lets events from outside into the simulation. Every time step the
+     * submitted events due by then are given to their nodes, before the
+     * events drawn at random. The simulation doesn't step past the events
+     * submitted so far, it waits for the producer to submit more, advance or
+     * end. The events waiting in the ingestion aren't part of a checkpoint.
+     *
+     * @param ingestion Where the events come from, or null for none.
+     * @throws IllegalStateException If the simulation is partitioned.
+     */
+    public void setIngestion(EventIngestion ingestion) {
+        if (ingestion != null && partitionLink != null) {
+            throw new IllegalStateException("Ingesting events into a partitioned simulation isn't supported");
+        }
+        this.ingestion = ingestion;
+    }
+
+    /**
+     * Lets the request nodes remember where the events their requests found
+     * are, and answer requests for them without sending a request while the
+     * entry lives. A request for an event the node is already searching for
+     * joins that search. The cache is part of a checkpoint.
+     *
+     * @param locationCache The cache, or null to send every request.
+     * @throws IllegalStateException If the simulation is partitioned.
+     */
+    public void setLocationCache(LocationCache locationCache) {
+        if (locationCache != null && partitionLink != null) {
+            throw new IllegalStateException("A location cache in a partitioned simulation isn't supported");
+        }
+        requestRegistry.setLocationCache(locationCache);
+    }
+
+    /**
+     * Gets how much routing information the nodes keep.
+     *
+     * @return The retention policy.
+     */
+    public RetentionPolicy getRetention() {
+        return retention;
+    }
+
+    /**
+     * Gets the oldest event that hasn't expired, every event with a lower ID has.
+     *
+     * @return The event ID, 0 if no event has expired.
+     */
+    public int getFirstLiveEvent() {
+        return firstLiveEvent;
+    }
+
+    /**
+     * Takes a checkpoint every given number of time steps. The state is
+     * copied between two time steps and written by the writer in the
+     * background.
+     *
+     * @param writer The writer of the checkpoints.
+     * @param interval The number of time steps between checkpoints.
+     */
+    public void setCheckpointing(CheckpointWriter writer, int interval) {
+        if (partitionLink != null || actorEngine != null) {
+            throw new IllegalStateException("Checkpoints of a partitioned simulation or with actors aren't supported");
+        }
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval must be positive: " + interval);
+        }
+        this.checkpointWriter = writer;
+        this.checkpointInterval = interval;
+        this.nextCheckpointTime = (time / interval + 1) * interval;
+    }
+
+    /**
+     * Saves the whole state of the simulation between two time steps: the
+     * topology, time, counters, retention policy, walk, random streams, the tables
+     * and queues of the nodes, the scheduled events, the registry, every
+     * message on its way and the pooled agents.
+     * Messages are saved once and referred to by number, since a message can
+     * be in more than one queue and in the registry.
+     *
+     * The way messages are sent, the result sink, metrics and checkpointing
+     * aren't saved and are set again on the restored environment.
+     *
+     * @param output Where the state is written.
+     * @throws IOException If writing fails.
+     */
+    public void writeState(DataOutput output) throws IOException {
+        topology.writeState(output);
+        output.writeLong(seed);
+        output.writeInt(agentDuration);
+        output.writeInt(requestDuration);
+        output.writeInt(numOfRequestNodes);
+        retention.writeState(output);
+        walkStrategy.writeState(output);
+
+        random.writeState(output);
+        output.writeInt(eventIdCounter);
+        for (int i = 0; i < eventIdCounter; i++) {
+            output.writeInt(eventTimes[i]);
+        }
+        output.writeInt(firstLiveEvent);
+        output.writeInt(nextExpiryTime);
+        output.writeInt(expiredEntries);
+        output.writeInt(numberOfSentRequests);
+        output.writeInt(numberOfFoundEvent);
+        output.writeLong(numberOfMoves);
+        output.writeInt(numberOfIngestedEvents);
+        output.writeInt(time);
+        output.writeInt(requestNodes.size());
+        for (Node requestNode : requestNodes) {
+            output.writeInt(requestNode.getIndex());
+        }
+
+        Map<Message, Integer> numbers = new IdentityHashMap<>();
+        for (Node node : nodes) {
+            node.numberMessages(numbers);
+        }
+        requestRegistry.numberMessages(numbers);
+        Message[] messages = new Message[numbers.size()];
+        for (Map.Entry<Message, Integer> entry : numbers.entrySet()) {
+            messages[entry.getValue()] = entry.getKey();
+        }
+        output.writeInt(messages.length);
+        for (Message message : messages) {
+            writeMessage(output, message);
+        }
+
+        for (Node node : nodes) {
+            node.writeState(output, numbers);
+        }
+        activeNodes.writeState(output);
+        eventSchedule.writeState(output);
+        requestRegistry.writeState(output, numbers);
+
+        /*A pooled agent keeps the capacity of its tables, which decides the
+        order it visits its routes in once it is used again*/
+        output.writeInt(agentPool.size());
+        for (int i = 0; i < agentPool.size(); i++) {
+            agentPool.get(i).writeState(output);
+        }
+    }
+
+    /**
+     * Restores an environment saved by writeState. It continues exactly like
+     * the saved one would have, as long as the messages are sent the same way.
+     *
+     * @param input Where the state is read from.
+     * @return The environment.
+     * @throws IOException If reading fails or the state is malformed.
+     */
+    public static Environment readState(DataInput input) throws IOException {
+        Topology topology = Topology.readState(input);
+        long seed = input.readLong();
+        int agentDuration = input.readInt();
+        int requestDuration = input.readInt();
+        int numOfRequestNodes = input.readInt();
+        Environment environment;
+        try {
+            environment = new Environment(topology, seed, agentDuration, requestDuration, numOfRequestNodes);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed parameters: " + e.getMessage(), e);
+        }
+        environment.setRetention(RetentionPolicy.readState(input));
+        environment.setWalkStrategy(WalkStrategy.readState(input));
+
+        environment.random.readState(input);
+        environment.eventIdCounter = input.readInt();
+        if (environment.eventIdCounter < 0) {
+            throw new IOException("Negative number of events: " + environment.eventIdCounter);
+        }
+        environment.eventTimes = new int[Math.max(16, environment.eventIdCounter)];
+        for (int i = 0; i < environment.eventIdCounter; i++) {
+            environment.eventTimes[i] = input.readInt();
+        }
+        environment.firstLiveEvent = input.readInt();
+        if (environment.firstLiveEvent < 0 || environment.firstLiveEvent > environment.eventIdCounter) {
+            throw new IOException("First live event out of range: " + environment.firstLiveEvent);
+        }
+        environment.nextExpiryTime = input.readInt();
+        environment.expiredEntries = input.readInt();
+        environment.numberOfSentRequests = input.readInt();
+        environment.numberOfFoundEvent = input.readInt();
+        environment.numberOfMoves = input.readLong();
+        environment.numberOfIngestedEvents = input.readInt();
+        environment.time = input.readInt();
+        environment.requestNodes.clear();
+        int requestNodeCount = input.readInt();
+        for (int i = 0; i < requestNodeCount; i++) {
+            environment.requestNodes.add(environment.getNode(input.readInt()));
+        }
+
+        Message[] messages = new Message[input.readInt()];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = environment.readMessage(input);
+        }
+
+        for (Node node : environment.nodes) {
+            node.readState(input, messages);
+        }
+        environment.activeNodes.readState(input);
+        environment.eventSchedule.readState(input);
+        environment.requestRegistry.readState(input, messages);
+
+        int pooledAgents = input.readInt();
+        if (pooledAgents < 0) {
+            throw new IOException("Negative number of pooled agents: " + pooledAgents);
+        }
+        for (int i = 0; i < pooledAgents; i++) {
+            environment.agentPool.release(Agent.restore(input, environment));
+        }
+        return environment;
+    }
+
+    /**
+     * Gets the metrics of the environment, they are only recorded when
+     * Metrics.ENABLED is true.
+     *
+     * @return The metrics.
+     */
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Chooses how the messages are sent each time step. With 0 threads the
+     * nodes send one after the other, otherwise the ParallelTickEngine sends
+     * them on the given number of threads. The parallel engine resolves which
+     * messages move in a fixed order, so it gives the same result for any
+     * number of threads, but not the same result as the sequential loop.
+     *
+     * @param threads The number of threads, 0 for the sequential loop.
+     */
+    public void setParallelism(int threads) {
+        if (threads < 0 || (threads == 0 && partitionLink != null)) {
+            throw new IllegalArgumentException("Number of threads must not be negative, "
+                    + "or zero in a partitioned simulation: " + threads);
+        }
+        if (tickEngine != null) {
+            tickEngine.shutdown();
+            tickEngine = null;
+        }
+        if (actorEngine != null) {
+            actorEngine.shutdown();
+            actorEngine = null;
+        }
+        if (threads > 0) {
+            tickEngine = new ParallelTickEngine(nodes, activeNodes, threads, partitionLink);
+        }
+    }
+
+    /**
+     * Lets the nodes send their messages as actors on the given number of
+     * threads, see ActorEngine. A message moves as soon as its node gets to
+     * run and the target is free, not once per time step, and the time
+     * steps only pace the events and requests: every time step lasts at
+     * least the given length of wall-clock time. A message that can't move
+     * is tried again in the next time step.
+     *
+     * The order the actors run in depends on the threads, so a run can't be
+     * repeated with a seed. Checkpoints and partitioned simulations aren't
+     * supported, and the metrics don't sample the routing tables.
+     *
+     * @param threads The number of threads, 0 to go back to the sequential loop.
+     * @param stepNanos The least length of a time step, in nanoseconds.
+     */
+    public void setActorMode(int threads, long stepNanos) {
+        if (threads < 0 || stepNanos < 0) {
+            throw new IllegalArgumentException("Number of threads and step length must not be negative: "
+                    + threads + ", " + stepNanos);
+        }
+        if (threads > 0 && (partitionLink != null || checkpointWriter != null)) {
+            throw new IllegalStateException("Actors don't support partitioned simulations or checkpoints");
+        }
+        setParallelism(0);
+        if (threads > 0) {
+            actorEngine = new ActorEngine(this, threads);
+            this.stepNanos = stepNanos;
+        }
+    }
+
+    /**
+     * Gets the engine of the actors, if the nodes run as actors.
+     *
+     * @return The engine, or null if the messages are sent once per time step.
+     */
+    public ActorEngine getActorEngine() {
+        return actorEngine;
+    }
+
+    /**
+     * Increase the time step of the program. The nodes stop being busy by
+     * themselves since they compare the time step they were made busy in.
      */
     private void updateTime() {
         time++;
-        for (Node node: nodes) {
-            node.setBusyStatus(false);
-        }
+    }
+
+    /**
+     * Gets the current time step.
+     *
+     * @return The time step.
+     */
+    public int getTime() {
+        return time;
+    }
+
+    /**
+     * Gets the node with the given index.
+     *
+     * @param index The index of the node, in the order the nodes were read.
+     * @return The node.
+     */
+    public Node getNode(int index) {
+        return nodes.get(index);
+    }
+
+    /**
+     * Gets the seed the simulation was started with.
+     *
+     * @return The seed.
+     */
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Gets the radio range of the environment.
+     *
+     * @return The distance within which two nodes are neighbours.
+     */
+    public int getRadioRange() {
+        return topology.getRadioRange();
+    }
+
+    /**
+     * Gets the topology of the environment, the positions and neighbours of the nodes.
+     *
+     * @return The topology.
+     */
+    public Topology getTopology() {
+        return topology;
     }
 
     /**
@@ -173,6 +1168,90 @@ public class Environment {
         return this.numberOfNodes;
     }
 
+    /**
+     * Gets the number of events that have happened.
+     *
+     * @return The number of events created.
+     */
+    public int getNumberOfEvents() {
+        return eventIdCounter;
+    }
+
+    /**
+     * Gets the number of requests that have been sent, not counting resending
+     * or the requests answered from the location cache or by joining a search.
+     *
+     * @return The number of sent requests.
+     */
+    public int getNumberOfSentRequests() {
+        return numberOfSentRequests;
+    }
+
+    /**
+     * Gets the number of sent requests that came back with their event, so
+     * it is at most the number of sent requests. The requests answered from
+     * the location cache or by joining a search are counted by the cache.
+     *
+     * @return The number of found events.
+     */
+    public int getNumberOfFoundEvents() {
+        return numberOfFoundEvent;
+    }
+
+    /**
+     * Gets the number of routes all nodes have together.
+     *
+     * @return The number of routing table entries.
+     */
+    public long getNumberOfRoutingEntries() {
+        long entries = 0;
+        for (Node node : nodes) {
+            entries += node.getRoutingTable().size();
+        }
+        return entries;
+    }
+
+    /**
+     * Gets the number of routes the nodes have evicted because their routing
+     * tables were full.
+     *
+     * @return The number of evicted routes.
+     */
+    public long getNumberOfEvictedEntries() {
+        long evicted = 0;
+        for (Node node : nodes) {
+            evicted += node.getEvictedEntries();
+        }
+        return evicted;
+    }
+
+    /**
+     * Gets the number of routes removed from the nodes because their event expired.
+     *
+     * @return The number of expired routes.
+     */
+    public int getNumberOfExpiredEntries() {
+        return expiredEntries;
+    }
+
+    /**
+     * Gets the number of events that came from the ingestion.
+     *
+     * @return The number of ingested events, included in the number of events.
+     */
+    public int getNumberOfIngestedEvents() {
+        return numberOfIngestedEvents;
+    }
+
+    /**
+     * Gets the number of times a message moved from one node to another.
+     *
+     * @return The number of moves.
+     */
+    public long getNumberOfMoves() {
+        return numberOfMoves;
+    }
+
     /**
      * Return a string that represent information of the program.
      *
@@ -183,7 +1262,21 @@ public class Environment {
         return "Number of nodes created: " + numberOfNodes + "\n" +
                 "Number of events created: " + eventIdCounter + "\n" +
                 "Number of sent request: " + numberOfSentRequests + "\n" +
-                "Number of found events: " + numberOfFoundEvent;
+                "Number of found events: " + numberOfFoundEvent + cacheStatistics();
+    }
+
+    private String cacheStatistics() {
+        LocationCache cache = requestRegistry.getLocationCache();
+        if (cache == null) {
+            return "";
+        }
+        return String.format("%nCache hit rate: %.1f%% (%d of %d requests)%n"
+                        + "Number of requests joining a search: %d%n"
+                        + "Number of requests answered without sending: %d%n"
+                        + "Number of saved hops: %d",
+                cache.getLookups() == 0 ? 0.0 : 100.0 * cache.getHits() / cache.getLookups(),
+                cache.getHits(), cache.getLookups(), cache.getJoined(), cache.getHits() + cache.getJoined(),
+                cache.getSavedHops());
     }
 }
 
@@ -0,0 +1,142 @@
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * The EventFileSource class reads events from a text file on a thread of its
+ * own and submits them to an EventIngestion. Every line is an event, the
+ * time step and the x and y coordinates separated by whitespace; empty lines
+ * and lines starting with # are skipped.
+ *
+ * When following, the source keeps reading lines appended to the file, like
+ * tail -f, until it is closed; a line is only read once it is complete.
+ * Otherwise it stops at the end of the file. While the ingestion queue is
+ * full the source waits and reads no further.
+ *
+ * The simulation waits for the lines up to the time step it runs, so a
+ * replayed file gives the same results however fast it is read. When the
+ * source stops, at the end of the file, when closed or on a malformed line,
+ * it ends the ingestion and the simulation no longer waits.
+ *
+ * @since 2023-05-25
+ */
+public class EventFileSource implements AutoCloseable {
+    /**
+     * How long to wait before looking for more lines at the end of the file, in milliseconds.
+     */
+    private static final int POLL_INTERVAL = 100;
+
+    private final Path file;
+    private final EventIngestion ingestion;
+    private final boolean follow;
+    private final Thread thread;
+    private volatile boolean closed;
+    private volatile IOException failure;
+    private int lineNumber;
+
+    /**
+     * Starts reading a file.
+     *
+     * @param file The file to read.
+     * @param ingestion Where the events are submitted.
+     * @param follow True to keep reading lines appended to the file until closed.
+     */
+    public EventFileSource(Path file, EventIngestion ingestion, boolean follow) {
+        this.file = file;
+        this.ingestion = ingestion;
+        this.follow = follow;
+        this.thread = new Thread(this::readLoop, "event-source");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Waits until the whole file has been submitted, which is never when following.
+     *
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void awaitEnd() throws InterruptedException {
+        thread.join();
+    }
+
+    /**
+     * Stops reading.
+     *
+     * @throws UncheckedIOException If reading the file failed or it had a malformed line.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("Reading events from " + file + " failed", failure);
+        }
+    }
+
+    private void readLoop() {
+        try (Reader input = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+            StringBuilder line = new StringBuilder();
+            char[] buffer = new char[8192];
+            while (!closed) {
+                int read = input.read(buffer);
+                if (read < 0) {
+                    if (!follow) {
+                        if (line.length() > 0) {
+                            submit(line);
+                        }
+                        return;
+                    }
+                    /*The rest of the line may not have been written yet*/
+                    Thread.sleep(POLL_INTERVAL);
+                    continue;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (buffer[i] == '\n') {
+                        submit(line);
+                        line.setLength(0);
+                    } else {
+                        line.append(buffer[i]);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            /*Closed while waiting*/
+        } catch (IOException e) {
+            failure = e;
+        } finally {
+            ingestion.end();
+        }
+    }
+
+    private void submit(CharSequence text) throws IOException, InterruptedException {
+        lineNumber++;
+        String line = text.toString().trim();
+        if (line.isEmpty() || line.startsWith("#")) {
+            return;
+        }
+        String[] fields = line.split("\\s+");
+        if (fields.length != 3) {
+            throw new IOException("Line " + lineNumber + " is not a time step and a position: " + line);
+        }
+        try {
+            ingestion.submit(Integer.parseInt(fields[0]), Integer.parseInt(fields[1]), Integer.parseInt(fields[2]));
+        } catch (NumberFormatException e) {
+            throw new IOException("Line " + lineNumber + " has a malformed number: " + line, e);
+        }
+    }
+}
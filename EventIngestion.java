@@ -0,0 +1,217 @@
+import java.util.ArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * The EventIngestion class feeds events from outside, like replayed sensor
+ * readings, into a running simulation. A producer submits an event with the
+ * time step it happens in and the position it was seen at, and the event
+ * goes to the node closest to that position. The events wait in a bounded
+ * queue until the environment reaches their time step; when the queue is
+ * full submit waits, so a producer faster than the simulation is held back
+ * instead of using more memory.
+ *
+ * Events should be submitted in time order. An event for a time step the
+ * simulation has passed already is given to its node in the current one.
+ *
+ * The simulation doesn't run ahead of the producer. An event submitted for a
+ * time step tells it that every event before that time step has been
+ * submitted, advance tells it the same without an event, and end tells it no
+ * more events come. Until then it waits, so a replay gives the same results
+ * however fast the events are read, and an empty queue doesn't mean there is
+ * no event to wait for.
+ *
+ * Any thread can submit. Only the thread running the simulation takes the
+ * events.
+ *
+ * @since 2023-05-25
+ */
+public class EventIngestion {
+    /**
+     * The number of events that can wait when none is given.
+     */
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    /*The node of a pending entry that only moves the watermark*/
+    private static final int MARKER = -1;
+
+    private final SpatialGrid grid;
+    private final LinkedBlockingQueue<Pending> queue;
+    private volatile boolean ended;
+    /*Taken from the queue but not due yet, only used by the simulation thread*/
+    private Pending next;
+    /*Every event before this time step has been taken, only used by the simulation thread*/
+    private int watermark = Integer.MIN_VALUE;
+
+    /**
+     * Constructs an ingestion for the nodes of a topology with the default capacity.
+     *
+     * @param topology The topology, whose positions the events are mapped to.
+     */
+    public EventIngestion(Topology topology) {
+        this(topology, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an ingestion for the nodes of a topology.
+     *
+     * @param topology The topology, whose positions the events are mapped to.
+     * @param capacity The number of events that can wait before submit waits.
+     */
+    public EventIngestion(Topology topology, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        ArrayList<Position> positions = new ArrayList<>(topology.size());
+        for (int i = 0; i < topology.size(); i++) {
+            positions.add(topology.getPosition(i));
+        }
+        this.grid = new SpatialGrid(positions, Math.max(1, topology.getRadioRange()));
+        this.queue = new LinkedBlockingQueue<>(capacity);
+    }
+
+    /**
+     * Submits an event, waiting while the queue is full.
+     *
+     * @param time The time step the event happens in.
+     * @param x The x coordinate where the event was seen.
+     * @param y The y coordinate where the event was seen.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void submit(int time, int x, int y) throws InterruptedException {
+        queue.put(new Pending(time, nodeAt(x, y)));
+    }
+
+    /**
+     * Submits an event if there is room in the queue, without waiting.
+     *
+     * @param time The time step the event happens in.
+     * @param x The x coordinate where the event was seen.
+     * @param y The y coordinate where the event was seen.
+     * @return False if the queue is full and the event was not submitted.
+     */
+    public boolean offer(int time, int x, int y) {
+        return queue.offer(new Pending(time, nodeAt(x, y)));
+    }
+
+    /**
+     * Tells the simulation that every event before a time step has been
+     * submitted, so it can run up to that time step. Waits while the queue
+     * is full.
+     *
+     * @param time The time step.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public void advance(int time) throws InterruptedException {
+        queue.put(new Pending(time, MARKER));
+    }
+
+    /**
+     * Tells the simulation that no more events are submitted, so it no
+     * longer waits for any. Doesn't wait.
+     */
+    public void end() {
+        ended = true;
+        /*Wakes the simulation if it waits on an empty queue, a full one wakes it anyway*/
+        queue.offer(new Pending(Integer.MAX_VALUE, MARKER));
+    }
+
+    /**
+     * Finds the node an event seen at a position goes to.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return The index of the closest node.
+     * @throws IllegalStateException If the topology has no nodes.
+     */
+    public int nodeAt(int x, int y) {
+        int node = grid.nearest(x, y);
+        if (node < 0) {
+            throw new IllegalStateException("There are no nodes to give events to");
+        }
+        return node;
+    }
+
+    /**
+     * Gets the time step of the next submitted event, if it comes before a
+     * given time step. Waits until that event, or every event before the
+     * given time step, has been submitted.
+     *
+     * @param limit The time step to look up to.
+     * @return The time step of the next event, or the limit if none comes before it.
+     */
+    public int nextTime(int limit) {
+        while (next == null && watermark < limit) {
+            take();
+        }
+        return next != null ? Math.min(next.time, limit) : limit;
+    }
+
+    /**
+     * Removes the next submitted event if it is due by the given time step.
+     *
+     * @param time The current time step.
+     * @return The index of the node that gets the event, or -1 if no more
+     * submitted events are due in this time step.
+     */
+    public int pollDue(int time) {
+        while (next == null && watermark <= time) {
+            take();
+        }
+        if (next == null || next.time > time) {
+            return -1;
+        }
+        int node = next.node;
+        next = null;
+        return node;
+    }
+
+    /**
+     * Takes the next entry from the queue, waiting for the producer while
+     * the queue is empty, and moves the watermark.
+     */
+    private void take() {
+        Pending pending = queue.poll();
+        if (pending == null) {
+            if (ended) {
+                watermark = Integer.MAX_VALUE;
+                return;
+            }
+            pending = takeUninterruptibly();
+        }
+        watermark = Math.max(watermark, pending.time);
+        if (pending.node != MARKER) {
+            next = pending;
+        }
+    }
+
+    private Pending takeUninterruptibly() {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                try {
+                    return queue.take();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * An event waiting for its time step, already mapped to its node, or a
+     * marker that only moves the watermark.
+     */
+    private static final class Pending {
+        private final int time;
+        private final int node;
+
+        private Pending(int time, int node) {
+            this.time = time;
+            this.node = node;
+        }
+    }
+}
@@ -0,0 +1,177 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The EventSchedule class holds the time step of the next event of every
+ * node. An event happens at a node with a small probability every time step,
+ * so instead of drawing a number for every node every time step, the number
+ * of time steps until the next event is drawn from the geometric distribution
+ * and kept in a priority queue.
+ *
+ * The queue is a binary heap of longs, the time step in the high half and the
+ * node index in the low half, so events of the same time step come out in
+ * node order.
+ *
+ * @since 2023-05-25
+ */
+public class EventSchedule {
+    private final long[] heap;
+    private final double logNoEvent;
+    private int size;
+
+    /**
+     * Constructs a schedule where each node gets an event with the given
+     * probability every time step, drawing the first event of every node.
+     *
+     * @param nodes The nodes of the environment, indexed by node index.
+     * @param probability The probability of an event at a node in one time step.
+     * @param startTime The first time step an event can happen in.
+     */
+    public EventSchedule(List<Node> nodes, double probability, int startTime) {
+        if (probability <= 0 || probability >= 1) {
+            throw new IllegalArgumentException("Probability must be between 0 and 1: " + probability);
+        }
+        this.logNoEvent = Math.log1p(-probability);
+        this.heap = new long[nodes.size()];
+        for (Node node : nodes) {
+            heap[size++] = key(nextEventTime(startTime, node.getRandom()), node.getIndex());
+        }
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Gets the time step of the next event in the environment.
+     *
+     * @return The time step, or Integer.MAX_VALUE if there are no nodes.
+     */
+    public int peekTime() {
+        return size == 0 ? Integer.MAX_VALUE : (int) (heap[0] >>> 32);
+    }
+
+    /**
+     * Removes the node with the next event if the event is due by the given
+     * time step, and schedules the following event of that node.
+     *
+     * @param time The current time step.
+     * @param nodes The nodes of the environment, indexed by node index.
+     * @return The index of the node that gets an event, or -1 if no more
+     * events happen in this time step.
+     */
+    public int pollDue(int time, List<Node> nodes) {
+        if (peekTime() > time) {
+            return -1;
+        }
+        int nodeIndex = (int) heap[0];
+        heap[0] = key(nextEventTime(time + 1, nodes.get(nodeIndex).getRandom()), nodeIndex);
+        siftDown(0);
+        return nodeIndex;
+    }
+
+    /**
+     * Like pollDue, but draws the following event from the given random
+     * instead of the random of the node, for when the node's random is used
+     * by another thread.
+     *
+     * @param time The current time step.
+     * @param random Where the time of the following event is drawn from.
+     * @return The index of the node that gets an event, or -1 if no more
+     * events happen in this time step.
+     */
+    public int pollDue(int time, SplitMixRandom random) {
+        if (peekTime() > time) {
+            return -1;
+        }
+        int nodeIndex = (int) heap[0];
+        heap[0] = key(nextEventTime(time + 1, random), nodeIndex);
+        siftDown(0);
+        return nodeIndex;
+    }
+
+    /**
+     * Drops the nodes of other regions, keeping the events already drawn
+     * for the nodes of the given region.
+     *
+     * @param partition The regions of the nodes.
+     * @param region The region to keep.
+     */
+    public void retainRegion(Partition partition, int region) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (partition.regionOf((int) heap[i]) == region) {
+                heap[kept++] = heap[i];
+            }
+        }
+        size = kept;
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Saves the scheduled events.
+     *
+     * @param output Where the schedule is written.
+     * @throws IOException If writing fails.
+     */
+    public void writeState(DataOutput output) throws IOException {
+        output.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            output.writeLong(heap[i]);
+        }
+    }
+
+    /**
+     * Replaces the scheduled events with ones saved by writeState for the
+     * same nodes, keeping the order of the heap.
+     *
+     * @param input Where the schedule is read from.
+     * @throws IOException If reading fails or the schedule is for other nodes.
+     */
+    public void readState(DataInput input) throws IOException {
+        int count = input.readInt();
+        if (count != heap.length) {
+            throw new IOException("Schedule has " + count + " nodes, expected " + heap.length);
+        }
+        for (int i = 0; i < count; i++) {
+            heap[i] = input.readLong();
+        }
+        size = count;
+    }
+
+    /**
+     * Draws the time step of the next event, the number of time steps
+     * without an event before it is geometrically distributed.
+     */
+    private int nextEventTime(int fromTime, SplitMixRandom random) {
+        double uniform = 1.0 - random.nextDouble();
+        double quietSteps = Math.floor(Math.log(uniform) / logNoEvent);
+        return (int) Math.min(Integer.MAX_VALUE, fromTime + quietSteps);
+    }
+
+    private static long key(int time, int nodeIndex) {
+        return ((long) time << 32) | nodeIndex;
+    }
+
+    private void siftDown(int i) {
+        long value = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= value) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = value;
+    }
+}
@@ -0,0 +1,177 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The EventTable class holds the events that happened at a node, keyed by
+ * event ID. It is an open-addressing hash table with linear probing, so
+ * looking up an event doesn't box the ID and an entry costs no map node.
+ *
+ * @since 2023-05-25
+ */
+public class EventTable {
+    private static final int EMPTY = -1;
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private int[] keys;
+    private Event[] events;
+    private int size;
+    private int mask;
+
+    /**
+     * Constructs an empty event table.
+     */
+    public EventTable() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Adds an event to the table, replacing an event with the same ID.
+     *
+     * @param event The event to add.
+     */
+    public void put(Event event) {
+        int eventID = event.getEventID();
+        if (eventID < 0) {
+            throw new IllegalArgumentException("Event ID must not be negative: " + eventID);
+        }
+        int slot = slotFor(eventID);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = eventID;
+            size++;
+        }
+        events[slot] = event;
+        if (size * 4 > keys.length * 3) {
+            grow();
+        }
+    }
+
+    /**
+     * Gets the event with the given ID.
+     *
+     * @param eventID The ID of the event.
+     * @return The event, or null if it didn't happen at this node.
+     */
+    public Event get(int eventID) {
+        return eventID < 0 ? null : events[slotFor(eventID)];
+    }
+
+    /**
+     * Checks if the event with the given ID is in the table.
+     *
+     * @param eventID The ID of the event.
+     * @return True if the event is in the table.
+     */
+    public boolean contains(int eventID) {
+        return eventID >= 0 && keys[slotFor(eventID)] == eventID;
+    }
+
+    /**
+     * Gets the number of events in the table.
+     *
+     * @return The number of events.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Removes the events with an ID below the given one, which are the events
+     * that happened first.
+     *
+     * @param eventID The first event ID to keep.
+     * @return The number of events removed.
+     */
+    public int expireBefore(int eventID) {
+        int[] oldKeys = keys;
+        Event[] oldEvents = events;
+        int kept = 0;
+        for (int key : oldKeys) {
+            if (key != EMPTY && key >= eventID) {
+                kept++;
+            }
+        }
+        int expired = size - kept;
+        if (expired == 0) {
+            return 0;
+        }
+        allocate(Math.min(oldKeys.length, Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, kept * 2) - 1) << 1));
+        size = kept;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY && oldKeys[i] >= eventID) {
+                int slot = slotFor(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                events[slot] = oldEvents[i];
+            }
+        }
+        return expired;
+    }
+
+    /**
+     * Saves the table, slot by slot, so it can be restored exactly.
+     *
+     * @param output Where the events are written.
+     * @throws IOException If writing fails.
+     */
+    public void writeState(DataOutput output) throws IOException {
+        output.writeInt(keys.length);
+        output.writeInt(size);
+        for (int slot = 0; slot < keys.length; slot++) {
+            output.writeInt(keys[slot]);
+            if (keys[slot] != EMPTY) {
+                output.writeInt(events[slot].getTimeStep());
+            }
+        }
+    }
+
+    /**
+     * Replaces the table with one saved by writeState.
+     *
+     * @param input Where the events are read from.
+     * @throws IOException If reading fails.
+     */
+    public void readState(DataInput input) throws IOException {
+        int capacity = input.readInt();
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IOException("Bad event table capacity: " + capacity);
+        }
+        allocate(capacity);
+        size = input.readInt();
+        for (int slot = 0; slot < capacity; slot++) {
+            keys[slot] = input.readInt();
+            if (keys[slot] != EMPTY) {
+                events[slot] = new Event(keys[slot], input.readInt());
+            }
+        }
+    }
+
+    private int slotFor(int eventID) {
+        int h = eventID * 0x9E3779B9;
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != eventID) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        events = new Event[capacity];
+        mask = capacity - 1;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        Event[] oldEvents = events;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = slotFor(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                events[slot] = oldEvents[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * The FoundEvent class is the result of a request that came back to its
+ * source node with the event it was looking for: which event it was, where
+ * it happened and when.
+ *
+ * @since 2023-05-25
+ */
+public class FoundEvent {
+    private final int requestId;
+    private final int eventID;
+    private final int x;
+    private final int y;
+    private final int createdTime;
+
+    /**
+     * Constructs the result of a request.
+     *
+     * @param requestId The id of the request that found the event.
+     * @param eventID The id of the event.
+     * @param x The x coordinate of the node the event happened at.
+     * @param y The y coordinate of the node the event happened at.
+     * @param createdTime The time step the event happened in.
+     */
+    public FoundEvent(int requestId, int eventID, int x, int y, int createdTime) {
+        this.requestId = requestId;
+        this.eventID = eventID;
+        this.x = x;
+        this.y = y;
+        this.createdTime = createdTime;
+    }
+
+    /**
+     * Gets the id of the request that found the event.
+     *
+     * @return The id of the request.
+     */
+    public int getRequestId() {
+        return requestId;
+    }
+
+    /**
+     * Gets the id of the event.
+     *
+     * @return The id of the event.
+     */
+    public int getEventID() {
+        return eventID;
+    }
+
+    /**
+     * Gets the x coordinate of the node the event happened at.
+     *
+     * @return The x coordinate.
+     */
+    public int getX() {
+        return x;
+    }
+
+    /**
+     * Gets the y coordinate of the node the event happened at.
+     *
+     * @return The y coordinate.
+     */
+    public int getY() {
+        return y;
+    }
+
+    /**
+     * Gets the time step the event happened in.
+     *
+     * @return The time step.
+     */
+    public int getCreatedTime() {
+        return createdTime;
+    }
+
+    /**
+     * The found event the way it is printed: its id, position and time step.
+     */
+    @Override
+    public String toString() {
+        return "Event ID: " + eventID +
+                " At Position: " + x + ", " + y +
+                " Created Time: " + createdTime;
+    }
+}
@@ -0,0 +1,222 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HaloExchange class connects the processes of a partitioned simulation
+ * to each other, every process to every other one with a TCP connection on
+ * the loopback interface. In an exchange every process sends one frame to
+ * every other one and waits for one frame from every other one, so an
+ * exchange also works as a barrier.
+ *
+ * Frames are written by a thread per connection, so two processes sending
+ * each other large frames at the same time can't block each other while
+ * neither reads. A sender thread stops when writing fails, and the next
+ * exchange reports the failure instead of waiting for it to take frames.
+ *
+ * @since 2023-05-25
+ */
+public class HaloExchange implements AutoCloseable {
+    /*Put in the outbox by close to tell the sender thread to stop*/
+    private static final byte[] END = new byte[0];
+    /**
+     * How long to wait for room in an outbox before checking that its sender is still running, in milliseconds.
+     */
+    private static final int SENDER_CHECK_INTERVAL = 100;
+
+    private final int index;
+    private final Socket[] sockets;
+    private final DataInputStream[] inputs;
+    /*Indexed by process, null for this process*/
+    private final List<BlockingQueue<byte[]>> outboxes;
+    private final Thread[] senders;
+    private volatile IOException failure;
+
+    /**
+     * Connects this process to the other processes. Every process listens on
+     * a port of its own, connects to the processes with a lower index and is
+     * connected to by the processes with a higher index.
+     *
+     * @param index The index of this process.
+     * @param server The socket this process listens on.
+     * @param ports The ports the processes listen on, indexed by process.
+     * @throws IOException If connecting fails.
+     */
+    public HaloExchange(int index, ServerSocket server, int[] ports) throws IOException {
+        if (index < 0 || index >= ports.length) {
+            throw new IllegalArgumentException("Index out of range: " + index);
+        }
+        int processes = ports.length;
+        this.index = index;
+        this.sockets = new Socket[processes];
+        this.inputs = new DataInputStream[processes];
+        this.outboxes = new ArrayList<>(Collections.nCopies(processes, null));
+        this.senders = new Thread[processes];
+
+        for (int peer = 0; peer < index; peer++) {
+            Socket socket = new Socket(InetAddress.getLoopbackAddress(), ports[peer]);
+            new DataOutputStream(socket.getOutputStream()).writeInt(index);
+            sockets[peer] = socket;
+        }
+        for (int accepted = index + 1; accepted < processes; accepted++) {
+            Socket socket = server.accept();
+            int peer = new DataInputStream(socket.getInputStream()).readInt();
+            if (peer <= index || peer >= processes || sockets[peer] != null) {
+                throw new IOException("Unexpected connection from process " + peer);
+            }
+            sockets[peer] = socket;
+        }
+
+        for (int peer = 0; peer < processes; peer++) {
+            if (peer == index) {
+                continue;
+            }
+            Socket socket = sockets[peer];
+            socket.setTcpNoDelay(true);
+            inputs[peer] = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            BlockingQueue<byte[]> outbox = new ArrayBlockingQueue<>(2);
+            outboxes.set(peer, outbox);
+            senders[peer] = new Thread(() -> sendLoop(outbox, output), "halo-sender-" + peer);
+            senders[peer].setDaemon(true);
+            senders[peer].start();
+        }
+    }
+
+    /**
+     * Sends a frame to every other process and receives a frame from every
+     * other process.
+     *
+     * @param frames The frame for every process, indexed by process, the frame of this process is ignored.
+     * @return The frame from every process, indexed by process, null for this process.
+     * @throws UncheckedIOException If a connection fails, or failed in an earlier exchange.
+     */
+    public byte[][] exchange(byte[][] frames) {
+        for (int peer = 0; peer < sockets.length; peer++) {
+            if (peer != index && !put(peer, frames[peer])) {
+                throw new UncheckedIOException("Sending to another process failed",
+                        failure != null ? failure : new IOException("Sender of process " + peer + " stopped"));
+            }
+        }
+        byte[][] received = new byte[sockets.length][];
+        try {
+            for (int peer = 0; peer < sockets.length; peer++) {
+                if (peer != index) {
+                    byte[] frame = new byte[inputs[peer].readInt()];
+                    inputs[peer].readFully(frame);
+                    received[peer] = frame;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Receiving from another process failed", failure != null ? failure : e);
+        }
+        return received;
+    }
+
+    /**
+     * Gets the number of processes, including this one.
+     *
+     * @return The number of processes.
+     */
+    public int processes() {
+        return sockets.length;
+    }
+
+    /**
+     * Gets the index of this process.
+     *
+     * @return The index.
+     */
+    public int index() {
+        return index;
+    }
+
+    /**
+     * Sends the frames still waiting and closes the connections.
+     */
+    @Override
+    public void close() {
+        for (int peer = 0; peer < sockets.length; peer++) {
+            if (peer != index) {
+                /*A sender that failed has stopped already*/
+                put(peer, END);
+            }
+        }
+        for (int peer = 0; peer < sockets.length; peer++) {
+            if (peer == index) {
+                continue;
+            }
+            try {
+                senders[peer].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                sockets[peer].close();
+            } catch (IOException e) {
+                /*The frames have been sent, nothing is lost*/
+            }
+        }
+    }
+
+    private void sendLoop(BlockingQueue<byte[]> outbox, DataOutputStream output) {
+        while (true) {
+            byte[] frame;
+            try {
+                frame = outbox.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+            if (frame == END) {
+                return;
+            }
+            try {
+                output.writeInt(frame.length);
+                output.write(frame);
+                output.flush();
+            } catch (IOException e) {
+                failure = e;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Puts a frame in the outbox of a process, waiting while it is full as
+     * long as the sender thread of the outbox is running.
+     *
+     * @return False if the sender thread has stopped, so the frame is never sent.
+     */
+    private boolean put(int peer, byte[] frame) {
+        BlockingQueue<byte[]> outbox = outboxes.get(peer);
+        boolean interrupted = false;
+        try {
+            while (senders[peer].isAlive()) {
+                try {
+                    if (outbox.offer(frame, SENDER_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            return false;
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,314 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The IntRoutingTable class is an open-addressing hash table from event ID to
+ * a route. The distance and the next node index of a route are packed into a
+ * single long, so an entry costs one int and one long and nothing is boxed.
+ *
+ * Collisions are resolved with linear probing, the table doubles when it is
+ * three quarters full. Entries are only removed by expiry and eviction, which
+ * rebuild the table with the entries that are kept, so a lookup never has to
+ * skip over removed entries.
+ *
+ * The time step each entry was last used in is only kept when the table
+ * records use, in a third array, so tables that don't need it pay nothing.
+ *
+ * @since 2023-05-25
+ */
+public class IntRoutingTable implements RoutingTable {
+    private static final int EMPTY = -1;
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private int[] keys;
+    private long[] routes;
+    private int[] stamps;
+    private boolean tracksUse;
+    private int size;
+    private int mask;
+
+    /**
+     * Constructs an empty routing table.
+     */
+    public IntRoutingTable() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs an empty routing table that holds the given number of
+     * entries before it has to grow.
+     *
+     * @param expectedSize The number of entries expected.
+     */
+    public IntRoutingTable(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    @Override
+    public int slotOf(int eventID) {
+        if (eventID < 0) {
+            return NO_SLOT;
+        }
+        int slot = hash(eventID) & mask;
+        while (true) {
+            int key = keys[slot];
+            if (key == eventID) {
+                return slot;
+            } else if (key == EMPTY) {
+                return NO_SLOT;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    @Override
+    public int put(int eventID, int distance, int nextNode) {
+        if (eventID < 0) {
+            throw new IllegalArgumentException("Event ID must not be negative: " + eventID);
+        }
+        int slot = hash(eventID) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != eventID) {
+            slot = (slot + 1) & mask;
+        }
+        if (keys[slot] == EMPTY) {
+            keys[slot] = eventID;
+            if (tracksUse) {
+                stamps[slot] = 0;
+            }
+            size++;
+        }
+        routes[slot] = pack(distance, nextNode);
+        if (size * 4 > keys.length * 3) {
+            grow();
+            slot = slotOf(eventID);
+        }
+        return slot;
+    }
+
+    @Override
+    public void putAt(int slot, int distance, int nextNode) {
+        routes[slot] = pack(distance, nextNode);
+    }
+
+    @Override
+    public int nextSlot(int fromSlot) {
+        for (int slot = fromSlot; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                return slot;
+            }
+        }
+        return NO_SLOT;
+    }
+
+    @Override
+    public int eventAt(int slot) {
+        return keys[slot];
+    }
+
+    @Override
+    public int distanceAt(int slot) {
+        return (int) (routes[slot] >> 32);
+    }
+
+    @Override
+    public int nextNodeAt(int slot) {
+        return (int) routes[slot];
+    }
+
+    @Override
+    public void trackUse(boolean track) {
+        if (track && !tracksUse) {
+            stamps = new int[keys.length];
+        } else if (!track) {
+            stamps = null;
+        }
+        tracksUse = track;
+    }
+
+    @Override
+    public void touch(int slot, int time) {
+        if (tracksUse) {
+            stamps[slot] = time;
+        }
+    }
+
+    @Override
+    public int expireBefore(int eventID) {
+        int expired = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY && keys[slot] < eventID) {
+                expired++;
+            }
+        }
+        if (expired > 0) {
+            /*Shrink the table when most of it expired, leaving room to grow*/
+            int kept = size - expired;
+            rebuild(Math.min(keys.length, capacityFor(kept * 2)), eventID, null, Long.MIN_VALUE);
+        }
+        return expired;
+    }
+
+    @Override
+    public int evict(int maxEntries, RetentionPolicy.Eviction eviction) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("Number of entries must not be negative: " + maxEntries);
+        }
+        int evicted = size - maxEntries;
+        if (evicted <= 0) {
+            return 0;
+        }
+        if (maxEntries == 0) {
+            clear();
+            return evicted;
+        }
+        long[] ranks = new long[size];
+        int count = 0;
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                ranks[count++] = rank(slot, eviction);
+            }
+        }
+        Arrays.sort(ranks);
+        rebuild(keys.length, 0, eviction, ranks[evicted]);
+        return evicted;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, EMPTY);
+        size = 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void writeState(DataOutput output) throws IOException {
+        output.writeInt(keys.length);
+        output.writeInt(size);
+        output.writeBoolean(tracksUse);
+        for (int slot = 0; slot < keys.length; slot++) {
+            output.writeInt(keys[slot]);
+            if (keys[slot] != EMPTY) {
+                output.writeLong(routes[slot]);
+                if (tracksUse) {
+                    output.writeInt(stamps[slot]);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void readState(DataInput input) throws IOException {
+        int capacity = input.readInt();
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IOException("Bad routing table capacity: " + capacity);
+        }
+        int entries = input.readInt();
+        tracksUse = input.readBoolean();
+        allocate(capacity);
+        size = entries;
+        for (int slot = 0; slot < capacity; slot++) {
+            keys[slot] = input.readInt();
+            if (keys[slot] != EMPTY) {
+                routes[slot] = input.readLong();
+                if (tracksUse) {
+                    stamps[slot] = input.readInt();
+                }
+            }
+        }
+    }
+
+    private static long pack(int distance, int nextNode) {
+        return ((long) distance << 32) | (nextNode & 0xFFFFFFFFL);
+    }
+
+    private static int hash(int eventID) {
+        int h = eventID * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Orders the entries for eviction, the entry with the lowest rank goes
+     * first. The event ID in the low half makes every rank different.
+     */
+    private long rank(int slot, RetentionPolicy.Eviction eviction) {
+        int distance = (int) (routes[slot] >> 32);
+        long order;
+        if (eviction == RetentionPolicy.Eviction.LRU) {
+            order = distance == 0 || !tracksUse ? Integer.MAX_VALUE : stamps[slot];
+        } else {
+            order = -(long) distance;
+        }
+        return (order << 32) | keys[slot];
+    }
+
+    /**
+     * Moves the entries with an event ID of at least firstEvent, and with a
+     * rank of at least firstRank when an eviction is given, into new arrays.
+     */
+    private void rebuild(int capacity, int firstEvent, RetentionPolicy.Eviction eviction, long firstRank) {
+        int[] oldKeys = keys;
+        long[] oldRoutes = routes;
+        int[] oldStamps = stamps;
+        int oldCapacity = oldKeys.length;
+        int[] kept = new int[size];
+        int count = 0;
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            if (oldKeys[slot] != EMPTY && oldKeys[slot] >= firstEvent
+                    && (eviction == null || rank(slot, eviction) >= firstRank)) {
+                kept[count++] = slot;
+            }
+        }
+        allocate(capacity);
+        size = count;
+        for (int i = 0; i < count; i++) {
+            int oldSlot = kept[i];
+            int slot = hash(oldKeys[oldSlot]) & mask;
+            while (keys[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[oldSlot];
+            routes[slot] = oldRoutes[oldSlot];
+            if (tracksUse) {
+                stamps[slot] = oldStamps[oldSlot];
+            }
+        }
+    }
+
+    private static int capacityFor(int expectedSize) {
+        return Integer.highestOneBit(Math.max(DEFAULT_CAPACITY, expectedSize * 4 / 3) - 1) << 1;
+    }
+
+    private void allocate(int capacity) {
+        keys = new int[capacity];
+        Arrays.fill(keys, EMPTY);
+        routes = new long[capacity];
+        stamps = tracksUse ? new int[capacity] : null;
+        mask = capacity - 1;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        long[] oldRoutes = routes;
+        int[] oldStamps = stamps;
+        allocate(oldKeys.length * 2);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                routes[slot] = oldRoutes[i];
+                if (tracksUse) {
+                    stamps[slot] = oldStamps[i];
+                }
+            }
+        }
+    }
+}
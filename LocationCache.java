@@ -0,0 +1,350 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The LocationCache class remembers, for every source node, where the events
+ * its requests found are, so a request for an event found recently is
+ * answered without sending a request through the network. An entry lives
+ * for a number of time steps after it was found, and when a source has as
+ * many entries as allowed the least recently used one is evicted.
+ *
+ * It also knows which searches are on their way. A request for an event the
+ * same source is already searching for joins that search instead of being
+ * sent, and gets its answer when the search returns, or is given up with it.
+ * A search that has been on its way as long as an entry lives is not joined
+ * any more, since it may never come back; the next request is sent and the
+ * requests waiting for the old search wait for the new one.
+ *
+ * Every answer from the cache or a joined search saves the hops of a search,
+ * counted as the hops the search that found the event took there and back.
+ *
+ * @since 2023-05-25
+ */
+public class LocationCache {
+    /**
+     * The answer of a request that joined a search.
+     */
+    public static final FoundEvent JOINED = new FoundEvent(-1, -1, 0, 0, 0);
+
+    private final int timeToLive;
+    private final int maxEntries;
+    private final HashMap<Integer, LinkedHashMap<Integer, Entry>> sources = new HashMap<>();
+    /*Searches on their way, by source node and event*/
+    private final HashMap<Long, Search> searches = new HashMap<>();
+
+    private long lookups;
+    private long hits;
+    private long joined;
+    private long savedHops;
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param timeToLive The number of time steps an entry is used after it was found, 0 to use it forever.
+     * @param maxEntries The number of entries a source node keeps, 0 for no limit.
+     */
+    public LocationCache(int timeToLive, int maxEntries) {
+        if (timeToLive < 0 || maxEntries < 0) {
+            throw new IllegalArgumentException("Time to live and entries must not be negative: "
+                    + timeToLive + ", " + maxEntries);
+        }
+        this.timeToLive = timeToLive;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Answers a request from the cache if the source found the event
+     * recently, or joins it to the search for the event if one is on its way.
+     *
+     * @param source The index of the source node.
+     * @param eventID The event the request is for.
+     * @param requestId The id of the request.
+     * @param time The current time step.
+     * @return The answer from the cache, JOINED if the request joined a
+     * search, or null if the request has to be sent.
+     */
+    public FoundEvent answer(int source, int eventID, int requestId, int time) {
+        lookups++;
+        LinkedHashMap<Integer, Entry> entries = sources.get(source);
+        Entry entry = entries != null ? entries.get(eventID) : null;
+        if (entry != null && timeToLive > 0 && time - entry.foundTime >= timeToLive) {
+            entries.remove(eventID);
+            entry = null;
+        }
+        if (entry != null) {
+            hits++;
+            savedHops += entry.hops;
+            return entry.answer(requestId);
+        }
+        Search search = searches.get(key(source, eventID));
+        if (search != null && !isStale(search, time)) {
+            joined++;
+            search.add(requestId);
+            return JOINED;
+        }
+        return null;
+    }
+
+    /**
+     * Notes that a request has been sent, so requests for the same event
+     * from the same source join it.
+     *
+     * @param request The request, registered already.
+     */
+    public void searching(Request request) {
+        long key = key(request.getSourceNode().getIndex(), request.getEventID());
+        int time = request.getTimeRequestSent();
+        Search search = searches.get(key);
+        if (search == null || isStale(search, time)) {
+            Search replacement = new Search(request.getId(), time);
+            if (search != null) {
+                for (int i = 0; i < search.count; i++) {
+                    replacement.add(search.waiting[i]);
+                }
+            }
+            searches.put(key, replacement);
+        }
+    }
+
+    /**
+     * Remembers where a returned request found its event, and answers the
+     * requests that joined its search.
+     *
+     * @param request The returned request.
+     * @param time The current time step.
+     * @param answers Where the answers of the joined requests are added.
+     * @return The number of joined requests answered.
+     */
+    public int returned(Request request, int time, List<FoundEvent> answers) {
+        int source = request.getSourceNode().getIndex();
+        int hops = 2 * request.getHopsToFind();
+        Entry entry = new Entry(request.getResult(), time, hops);
+        LinkedHashMap<Integer, Entry> entries = sources.computeIfAbsent(source, s -> newEntries());
+        entries.remove(entry.result.getEventID());
+        entries.put(entry.result.getEventID(), entry);
+
+        Search search = takeSearch(source, request);
+        if (search == null) {
+            return 0;
+        }
+        for (int i = 0; i < search.count; i++) {
+            answers.add(entry.answer(search.waiting[i]));
+        }
+        savedHops += (long) hops * search.count;
+        return search.count;
+    }
+
+    /**
+     * Gives up the requests that joined the search of a request that was given up.
+     *
+     * @param request The request given up.
+     * @return The number of joined requests given up.
+     */
+    public int dropped(Request request) {
+        Search search = takeSearch(request.getSourceNode().getIndex(), request);
+        return search == null ? 0 : search.count;
+    }
+
+    /**
+     * Gets the number of requests looked up in the cache.
+     *
+     * @return The number of lookups.
+     */
+    public long getLookups() {
+        return lookups;
+    }
+
+    /**
+     * Gets the number of requests answered from the cache.
+     *
+     * @return The number of hits.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of requests that joined a search on its way.
+     *
+     * @return The number of joined requests.
+     */
+    public long getJoined() {
+        return joined;
+    }
+
+    /**
+     * Gets the hops saved by answering requests from the cache and joined searches.
+     *
+     * @return The saved hops.
+     */
+    public long getSavedHops() {
+        return savedHops;
+    }
+
+    /**
+     * Saves the cache for a checkpoint, the entries of every source from the
+     * least to the most recently used.
+     *
+     * @param output Where the cache is written.
+     * @throws IOException If writing fails.
+     */
+    public void writeState(DataOutput output) throws IOException {
+        output.writeInt(timeToLive);
+        output.writeInt(maxEntries);
+        output.writeLong(lookups);
+        output.writeLong(hits);
+        output.writeLong(joined);
+        output.writeLong(savedHops);
+        TreeMap<Integer, LinkedHashMap<Integer, Entry>> sorted = new TreeMap<>(sources);
+        output.writeInt(sorted.size());
+        for (Map.Entry<Integer, LinkedHashMap<Integer, Entry>> source : sorted.entrySet()) {
+            output.writeInt(source.getKey());
+            output.writeInt(source.getValue().size());
+            for (Entry entry : source.getValue().values()) {
+                output.writeInt(entry.result.getRequestId());
+                output.writeInt(entry.result.getEventID());
+                output.writeInt(entry.result.getX());
+                output.writeInt(entry.result.getY());
+                output.writeInt(entry.result.getCreatedTime());
+                output.writeInt(entry.foundTime);
+                output.writeInt(entry.hops);
+            }
+        }
+        TreeMap<Long, Search> sortedSearches = new TreeMap<>(searches);
+        output.writeInt(sortedSearches.size());
+        for (Map.Entry<Long, Search> search : sortedSearches.entrySet()) {
+            output.writeLong(search.getKey());
+            output.writeInt(search.getValue().requestId);
+            output.writeInt(search.getValue().sentTime);
+            output.writeInt(search.getValue().count);
+            for (int i = 0; i < search.getValue().count; i++) {
+                output.writeInt(search.getValue().waiting[i]);
+            }
+        }
+    }
+
+    /**
+     * Restores a cache saved by writeState.
+     *
+     * @param input Where the cache is read from.
+     * @return The cache.
+     * @throws IOException If reading fails.
+     */
+    public static LocationCache readState(DataInput input) throws IOException {
+        LocationCache cache;
+        try {
+            cache = new LocationCache(input.readInt(), input.readInt());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed location cache", e);
+        }
+        cache.lookups = input.readLong();
+        cache.hits = input.readLong();
+        cache.joined = input.readLong();
+        cache.savedHops = input.readLong();
+        int sourceCount = input.readInt();
+        for (int s = 0; s < sourceCount; s++) {
+            LinkedHashMap<Integer, Entry> entries = cache.newEntries();
+            cache.sources.put(input.readInt(), entries);
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                FoundEvent result = new FoundEvent(input.readInt(), input.readInt(), input.readInt(),
+                        input.readInt(), input.readInt());
+                entries.put(result.getEventID(), new Entry(result, input.readInt(), input.readInt()));
+            }
+        }
+        int searchCount = input.readInt();
+        for (int s = 0; s < searchCount; s++) {
+            long key = input.readLong();
+            Search search = new Search(input.readInt(), input.readInt());
+            int count = input.readInt();
+            if (count < 0) {
+                throw new IOException("Malformed search: " + count + " joined requests");
+            }
+            for (int i = 0; i < count; i++) {
+                search.add(input.readInt());
+            }
+            cache.searches.put(key, search);
+        }
+        return cache;
+    }
+
+    /**
+     * Removes the search of a request, if the request is the one searching.
+     * A request sent while an answer was cached doesn't have a search of its own.
+     */
+    private Search takeSearch(int source, Request request) {
+        long key = key(source, request.getEventID());
+        Search search = searches.get(key);
+        if (search == null || search.requestId != request.getId()) {
+            return null;
+        }
+        searches.remove(key);
+        return search;
+    }
+
+    private boolean isStale(Search search, int time) {
+        return timeToLive > 0 && time - search.sentTime >= timeToLive;
+    }
+
+    private LinkedHashMap<Integer, Entry> newEntries() {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry> eldest) {
+                return maxEntries > 0 && size() > maxEntries;
+            }
+        };
+    }
+
+    private static long key(int source, int eventID) {
+        return (long) source << 32 | (eventID & 0xffffffffL);
+    }
+
+    /**
+     * Where a source found an event, when and with how many hops.
+     */
+    private static final class Entry {
+        private final FoundEvent result;
+        private final int foundTime;
+        private final int hops;
+
+        private Entry(FoundEvent result, int foundTime, int hops) {
+            this.result = result;
+            this.foundTime = foundTime;
+            this.hops = hops;
+        }
+
+        private FoundEvent answer(int requestId) {
+            return new FoundEvent(requestId, result.getEventID(), result.getX(), result.getY(),
+                    result.getCreatedTime());
+        }
+    }
+
+    /**
+     * A search on its way and the ids of the requests that joined it.
+     */
+    private static final class Search {
+        private final int requestId;
+        private final int sentTime;
+        private int[] waiting = new int[0];
+        private int count;
+
+        private Search(int requestId, int sentTime) {
+            this.requestId = requestId;
+            this.sentTime = sentTime;
+        }
+
+        private void add(int id) {
+            if (count == waiting.length) {
+                waiting = Arrays.copyOf(waiting, Math.max(4, count * 2));
+            }
+            waiting[count++] = id;
+        }
+    }
+}
@@ -1,3 +1,7 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 /**
  * Message class is an abstract class that represent Request and Agent.
  *
@@ -23,11 +27,128 @@ public abstract class Message {
    }
 
    /**
-    * Abstract method for moving the request and agent.
+    * Sets the message up to start over, used when a pooled message is used again.
+    *
+    * @param node The node that the message is currently at.
+    * @param maxDuration the maximum step for the message.
+    * @param eventID the event id that the message looking for.
+    */
+   protected void reset(Node node, int maxDuration, int eventID) {
+      this.currentNode = node;
+      this.durationTime = maxDuration;
+      this.eventID = eventID;
+      this.claimsTarget = false;
+   }
+
+   /**
+    * Saves the state of the message for a checkpoint. Subclasses add their
+    * own state after it.
+    *
+    * @param output Where the state is written.
+    * @throws IOException If writing fails.
+    */
+   protected void writeState(DataOutput output) throws IOException {
+      output.writeInt(currentNode.getIndex());
+      output.writeInt(eventID);
+      output.writeInt(durationTime);
+      output.writeBoolean(claimsTarget);
+   }
+
+   /**
+    * Restores the state saved by writeState.
+    *
+    * @param input Where the state is read from.
+    * @param environment The environment the message is in.
+    * @throws IOException If reading fails.
+    */
+   protected void readState(DataInput input, Environment environment) throws IOException {
+      this.currentNode = environment.getNode(input.readInt());
+      this.eventID = input.readInt();
+      this.durationTime = input.readInt();
+      this.claimsTarget = input.readBoolean();
+   }
+
+   /**
+    * True if the move chosen by the last selectTarget needs the target to be
+    * free, a busy target then stops the move.
+    */
+   protected boolean claimsTarget;
+
+   /**
+    * Moves the request and agent, by choosing a target and moving there.
     *
     * @return true if the request and agent move.
     */
-   public abstract boolean send();
+   public boolean send() {
+      Node target = selectTarget();
+      if (target == null) {
+         return false;
+      }
+      moveTo(target);
+      return true;
+   }
+
+   /**
+    * Abstract method for choosing where the request and agent moves next. It
+    * only reads the nodes, apart from recording that a route of the current
+    * node was used, so it can run for many messages at the same time.
+    *
+    * @return the node to move to, or null if the message can't move now.
+    */
+   public abstract Node selectTarget();
+
+   /**
+    * Abstract method for moving the request and agent to the target chosen by
+    * the last selectTarget, and putting it in the queue of the target. It
+    * changes only the message and the target, the node the message leaves
+    * finishes the send itself, so with actors it runs on the target's actor.
+    *
+    * @param target the node returned by selectTarget.
+    */
+   public abstract void moveTo(Node target);
+
+   /**
+    * Called when the message is dropped from a queue because its duration
+    * has run out. Does nothing unless a message needs to know.
+    */
+   public void expire() {
+   }
+
+   /**
+    * Called when the message has moved on to a node of another process. The
+    * object left behind is no longer the message, so it is at no node and
+    * any queue still holding it drops it.
+    */
+   public void detach() {
+      this.currentNode = null;
+   }
+
+   /**
+    * Checks if the move chosen by the last selectTarget needs the target to be free.
+    *
+    * @return true if a busy target stops the move.
+    */
+   public boolean claimsTarget() {
+      return claimsTarget;
+   }
+
+   /**
+    * Gets the node the message is currently at.
+    *
+    * @return the current node of the message.
+    */
+   public Node getCurrentNode() {
+      return this.currentNode;
+   }
+
+   /**
+    * Gets the event the message is about.
+    *
+    * @return the id of the event.
+    */
+   public int getEventID() {
+      return this.eventID;
+   }
 
    /**
     * Gets the duration time of the message.
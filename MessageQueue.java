@@ -0,0 +1,104 @@
+import java.util.NoSuchElementException;
+
+/**
+ * The MessageQueue class is the mailbox of a node, a first-in first-out
+ * queue of messages kept in a ring buffer. Adding a message allocates nothing
+ * unless the buffer is full, then it doubles.
+ *
+ * @since 2023-05-25
+ */
+public class MessageQueue {
+    private static final int DEFAULT_CAPACITY = 4;
+
+    private Message[] messages = new Message[DEFAULT_CAPACITY];
+    private int head;
+    private int size;
+
+    /**
+     * Adds a message to the end of the queue.
+     *
+     * @param message The message to add.
+     */
+    public void add(Message message) {
+        if (size == messages.length) {
+            grow();
+        }
+        messages[(head + size) & (messages.length - 1)] = message;
+        size++;
+    }
+
+    /**
+     * Gets the message at the front of the queue without removing it.
+     *
+     * @return The first message, or null if the queue is empty.
+     */
+    public Message peek() {
+        return size == 0 ? null : messages[head];
+    }
+
+    /**
+     * Removes the message at the front of the queue.
+     *
+     * @return The removed message.
+     * @throws NoSuchElementException if the queue is empty.
+     */
+    public Message remove() {
+        if (size == 0) {
+            throw new NoSuchElementException();
+        }
+        Message message = messages[head];
+        messages[head] = null;
+        head = (head + 1) & (messages.length - 1);
+        size--;
+        return message;
+    }
+
+    /**
+     * Gets a message without removing it.
+     *
+     * @param i The position in the queue, 0 is the front.
+     * @return The message.
+     */
+    public Message get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException(i);
+        }
+        return messages[(head + i) & (messages.length - 1)];
+    }
+
+    /**
+     * Removes all messages.
+     */
+    public void clear() {
+        while (size > 0) {
+            remove();
+        }
+    }
+
+    /**
+     * Checks if the queue is empty.
+     *
+     * @return True if there are no messages in the queue.
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Gets the number of messages in the queue.
+     *
+     * @return The number of messages.
+     */
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        Message[] grown = new Message[messages.length * 2];
+        for (int i = 0; i < size; i++) {
+            grown[i] = messages[(head + i) & (messages.length - 1)];
+        }
+        messages = grown;
+        head = 0;
+    }
+}
@@ -0,0 +1,92 @@
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Metrics class holds the counters and histograms of one environment.
+ *
+ * Metrics are turned on with the system property rumor.metrics=true. The
+ * property is read once into the constant ENABLED, and every place that
+ * records a metric checks it first, so when metrics are off the JIT compiler
+ * removes the recording and the hot loop pays nothing.
+ *
+ * The metrics count from the last reset, the environment resets them every
+ * time they are exported so every row covers one interval.
+ *
+ * @since 2023-05-25
+ */
+public class Metrics {
+    /**
+     * True if metrics are recorded.
+     */
+    public static final boolean ENABLED = Boolean.getBoolean("rumor.metrics");
+
+    /**
+     * Wall time of a whole time step, in nanoseconds.
+     */
+    public final Histogram tickNanos = new Histogram("tickNanos");
+
+    /**
+     * Hops a request made from its source node until it found the event.
+     */
+    public final Histogram requestHopsToFind = new Histogram("requestHopsToFind");
+
+    /**
+     * Time steps from sending a request until it came back with the event.
+     */
+    public final Histogram requestRoundTrip = new Histogram("requestRoundTripTicks");
+
+    /**
+     * Hops an agent made before it ran out of duration.
+     */
+    public final Histogram agentHops = new Histogram("agentHops");
+
+    /**
+     * Length of the queue of a node when it is about to send.
+     */
+    public final Histogram queueDepth = new Histogram("queueDepth");
+
+    /**
+     * Number of events in the routing table of every node, sampled when the
+     * metrics are exported.
+     */
+    public final Histogram routingTableSize = new Histogram("routingTableSize");
+
+    /**
+     * Times a message couldn't be sent because the neighbours it could move
+     * to were busy or already visited.
+     */
+    public final LongAdder blockedSends = new LongAdder();
+
+    private final Histogram[] histograms = {tickNanos, requestHopsToFind, requestRoundTrip,
+            agentHops, queueDepth, routingTableSize};
+
+    /**
+     * Records the size of the routing table of every node.
+     *
+     * @param nodes The nodes of the environment.
+     */
+    public void sampleRoutingTables(List<Node> nodes) {
+        for (Node node : nodes) {
+            routingTableSize.record(node.getRoutingTable().size());
+        }
+    }
+
+    /**
+     * Gets the histograms, in the order they are exported.
+     *
+     * @return The histograms.
+     */
+    public Histogram[] getHistograms() {
+        return histograms;
+    }
+
+    /**
+     * Starts a new interval, removing everything recorded.
+     */
+    public void reset() {
+        for (Histogram histogram : histograms) {
+            histogram.reset();
+        }
+        blockedSends.reset();
+    }
+}
@@ -0,0 +1,77 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * The MetricsCsvWriter class writes metrics to a CSV file, one row per
+ * metric every time the metrics are exported. A counter only fills in the
+ * count column.
+ *
+ * @since 2023-05-25
+ */
+public class MetricsCsvWriter {
+    private static final double[] PERCENTILES = {50, 90, 99};
+
+    private final BufferedWriter output;
+
+    /**
+     * Constructs a writer that writes to a file, replacing what was in it,
+     * and writes the header row.
+     *
+     * @param file The file to write to.
+     * @throws IOException If the file can't be written.
+     */
+    public MetricsCsvWriter(Path file) throws IOException {
+        output = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+        output.write("time,metric,count,sum,mean,p50,p90,p99,max");
+        output.newLine();
+    }
+
+    /**
+     * Writes one row per metric.
+     *
+     * @param time The time step the metrics were taken at.
+     * @param metrics The metrics.
+     * @throws UncheckedIOException If the file can't be written.
+     */
+    public void write(int time, Metrics metrics) {
+        try {
+            for (Histogram histogram : metrics.getHistograms()) {
+                long count = histogram.getCount();
+                StringBuilder row = new StringBuilder();
+                row.append(time).append(',').append(histogram.getName())
+                        .append(',').append(count)
+                        .append(',').append(histogram.getSum())
+                        .append(',').append(count == 0 ? "" : String.format(Locale.ROOT, "%.2f", (double) histogram.getSum() / count));
+                for (double percentile : PERCENTILES) {
+                    row.append(',').append(histogram.percentile(percentile));
+                }
+                row.append(',').append(histogram.getMax());
+                output.write(row.toString());
+                output.newLine();
+            }
+            output.write(time + ",blockedSends," + metrics.blockedSends.sum() + ",,,,,,");
+            output.newLine();
+            output.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Writing metrics failed", e);
+        }
+    }
+
+    /**
+     * Closes the file.
+     *
+     * @throws UncheckedIOException If the file can't be closed.
+     */
+    public void close() {
+        try {
+            output.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Closing metrics file failed", e);
+        }
+    }
+}
@@ -1,3 +1,6 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -9,48 +12,75 @@ import java.util.*;
  * @since 2023-05-25
  **/
 public class Node {
-    private ArrayList<Node> neighbours = new ArrayList<>();
     private Position position;
-    private HashMap<Integer, Routing> routingTable = new HashMap<>();
-    private HashMap<Integer, Event> eventTable = new HashMap<>();
-    private boolean busyStatus = false;
+    private int index;
+    private Environment environment;
+    private SplitMixRandom random;
+    private RoutingTable routingTable = new IntRoutingTable();
+    private EventTable eventTable = new EventTable();
+    /**
+     * The time step the node was last made busy in, the node is busy as long
+     * as that is the current time step of the environment.
+     */
+    private int busyTime = -1;
     private boolean agentStatus;
-    private Queue<Message> messageQueue = new LinkedList<>();
+    /**
+     * The number of routes the node has evicted because its routing table was full.
+     */
+    private int evictedEntries;
+    private MessageQueue messageQueue = new MessageQueue();
 
     /**
      * Constructor: Node
      * Description: Contains the necessary building blocks for a node.
      * The node position, the agents chance and the agent lifespan.
      * @param pos - Node position
+     * @param index - The index of the node in the environment
+     * @param environment - The environment the node belongs to
+     * @param random - The random stream of the node
      */
 
-    public Node(Position pos) {
+    public Node(Position pos, int index, Environment environment, SplitMixRandom random) {
         this.position = pos;
+        this.index = index;
+        this.environment = environment;
+        this.random = random;
     }
 
-    /**
-     * Method: insertNeighbours
-     * Description: Sets the neighbouring nodes to this node.
-     * @param inputNeighbours
-     */
-    public void insertNeighbours(ArrayList<Node> inputNeighbours){
-        this.neighbours = inputNeighbours;
-    }
     /**
      * Method: setBusyStatus
      * Description: Sets the status of the node to the current status(Busy or not).
+     * A busy node becomes free by itself when the time step ends.
      */
     public void setBusyStatus(boolean status) {
-        this.busyStatus = status;
+        checkActor();
+        this.busyTime = status ? environment.getTime() : -1;
+    }
+
+    /**
+     * Method: checkActor
+     * Description: When the actors of the environment send the messages, only
+     * the actor of the node may change its queue and busy status. A message
+     * moving from another node must leave the state of that node alone.
+     * @throws IllegalStateException If another thread changes the node.
+     */
+    private void checkActor() {
+        ActorEngine actors = environment.getActorEngine();
+        if (actors != null && !actors.runsActorOf(index)) {
+            throw new IllegalStateException("Node " + index + " changed outside its actor");
+        }
     }
 
     /**
      * Method: getBusyStatus
-     * Description: Returns the current status of the node.
+     * Description: Returns the current status of the node. When the actors
+     * of the environment send the messages, a node is busy while its actor
+     * runs, except to its own messages.
      * @return
      */
-    public Boolean getBusyStatus() {
-        return busyStatus;
+    public boolean getBusyStatus() {
+        ActorEngine actors = environment.getActorEngine();
+        return actors != null ? actors.isBusy(index) : busyTime == environment.getTime();
     }
 
     /**
@@ -72,12 +102,22 @@ public class Node {
     }
 
     /**
-     * Method: getNeighbours
-     * Description: Returns the nodes that are neighbours with this node.
-     * @return neighbours
+     * Method: getNeighbourCount
+     * Description: Returns the number of nodes that are neighbours with this node.
+     * @return the number of neighbours
      */
-    public ArrayList<Node> getNeighbours() {
-        return this.neighbours;
+    public int getNeighbourCount() {
+        return environment.getTopology().degree(index);
+    }
+
+    /**
+     * Method: getNeighbour
+     * Description: Returns one of the nodes that are neighbours with this node.
+     * @param i which neighbour, from 0 up to the number of neighbours
+     * @return the neighbour
+     */
+    public Node getNeighbour(int i) {
+        return environment.getNode(environment.getTopology().neighbour(index, i));
     }
 
     /**
@@ -86,8 +126,10 @@ public class Node {
      * @param message
      */
     public void insertMessage(Message message) {
+        checkActor();
         messageQueue.add(message);
-        this.busyStatus = true;
+        setBusyStatus(true);
+        environment.activate(index);
     }
 
     /**
@@ -99,37 +141,170 @@ public class Node {
      */
     public void insertEvent(Event event, int agentDuration) {
 
-        Random random = new Random();
         int agentChance = random.nextInt(2);
         this.agentStatus = false;
 
-        Routing route = new Routing(event.getEventID(), 0, this);
-        routingTable.put(event.getEventID(), route);
-        eventTable.put(event.getEventID(), event);
+        routingTable.touch(routingTable.put(event.getEventID(), 0, index), environment.getTime());
+        eventTable.put(event);
+        limitRoutingTable();
 
         if (agentChance == 1) {
-            Agent agent = new Agent(this, agentDuration, event.getEventID());
+            Agent agent = environment.newAgent(this, agentDuration, event.getEventID());
             this.agentStatus = true;
             messageQueue.add(agent);
+            environment.activate(index);
         }
     }
 
+    /**
+     * Method: limitRoutingTable
+     * Description: Evicts routes when the routing table has grown past the
+     * size the retention policy of the environment allows.
+     */
+    public void limitRoutingTable() {
+        RetentionPolicy retention = environment.getRetention();
+        if (routingTable.size() > retention.getEvictionSize()) {
+            evictedEntries += routingTable.evict(retention.getMaxEntries(), retention.getEviction());
+        }
+    }
+
+    /**
+     * Method: expireBefore
+     * Description: Removes the routes to and the events with an ID below the
+     * given one, which are the events that have expired.
+     * @param eventID The first event ID to keep.
+     * @return the number of routes removed
+     */
+    public int expireBefore(int eventID) {
+        eventTable.expireBefore(eventID);
+        return routingTable.expireBefore(eventID);
+    }
+
+    /**
+     * Method: getEvictedEntries
+     * Description: Returns the number of routes the node has evicted because
+     * its routing table was full.
+     * @return evictedEntries
+     */
+    public int getEvictedEntries() {
+        return evictedEntries;
+    }
+
     /**
      * Method: sendMessage
      * Description: Sends the message to another node and removes it from the queue.
+     * @return true if a message moved
      */
-    public void sendMessage() {
-        if (!messageQueue.isEmpty()) {
-            if (messageQueue.peek().getDurationTime() > 0) {
-                if (messageQueue.peek().send()) {
-                    messageQueue.remove();
-                    busyStatus = true;
-                }
-            } else {
+    public boolean sendMessage() {
+        Message message = nextMessage();
+        if (message != null) {
+            if (message.send()) {
+                completeSend();
+                return true;
+            } else if (Metrics.ENABLED) {
+                environment.getMetrics().blockedSends.increment();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Method: nextMessage
+     * Description: Drops the messages at the front of the queue that have
+     * moved on or run out of duration, telling the latter they expired, and
+     * returns the first one left. A copy of a request that was sent again
+     * has moved on too, it is dropped rather than moved twice.
+     * @return the message to send next, or null if the queue is empty
+     */
+    public Message nextMessage() {
+        if (Metrics.ENABLED) {
+            environment.getMetrics().queueDepth.record(messageQueue.size());
+        }
+        while (!messageQueue.isEmpty()) {
+            Message message = messageQueue.peek();
+            if (message.getCurrentNode() != this) {
                 messageQueue.remove();
-                sendMessage();
+            } else if (message.getDurationTime() <= 0) {
+                messageQueue.remove();
+                message.expire();
+            } else {
+                return message;
             }
         }
+        return null;
+    }
+
+    /**
+     * Method: completeSend
+     * Description: Removes the message that has been sent from the front of
+     * the queue, the node stays busy for the rest of the time step.
+     */
+    public void completeSend() {
+        messageQueue.remove();
+        setBusyStatus(true);
+    }
+
+    /**
+     * Method: hasMessages
+     * Description: Checks if there are messages in the queue of the node.
+     * @return true if the queue isn't empty
+     */
+    public boolean hasMessages() {
+        return !messageQueue.isEmpty();
+    }
+
+    /**
+     * Method: numberMessages
+     * Description: Gives every queued message that has no number yet the
+     * next number, so a checkpoint can refer to messages by number.
+     * @param numbers The numbers of the messages, in the order they were given.
+     */
+    public void numberMessages(Map<Message, Integer> numbers) {
+        for (int i = 0; i < messageQueue.size(); i++) {
+            numbers.putIfAbsent(messageQueue.get(i), numbers.size());
+        }
+    }
+
+    /**
+     * Method: writeState
+     * Description: Saves the state of the node for a checkpoint, the queued
+     * messages by their numbers.
+     * @param output Where the state is written.
+     * @param numbers The numbers of the messages.
+     * @throws IOException If writing fails.
+     */
+    public void writeState(DataOutput output, Map<Message, Integer> numbers) throws IOException {
+        random.writeState(output);
+        routingTable.writeState(output);
+        eventTable.writeState(output);
+        output.writeInt(busyTime);
+        output.writeBoolean(agentStatus);
+        output.writeInt(evictedEntries);
+        output.writeInt(messageQueue.size());
+        for (int i = 0; i < messageQueue.size(); i++) {
+            output.writeInt(numbers.get(messageQueue.get(i)));
+        }
+    }
+
+    /**
+     * Method: readState
+     * Description: Restores the state saved by writeState.
+     * @param input Where the state is read from.
+     * @param messages The messages of the checkpoint, indexed by number.
+     * @throws IOException If reading fails.
+     */
+    public void readState(DataInput input, Message[] messages) throws IOException {
+        random.readState(input);
+        routingTable.readState(input);
+        eventTable.readState(input);
+        busyTime = input.readInt();
+        agentStatus = input.readBoolean();
+        evictedEntries = input.readInt();
+        messageQueue.clear();
+        int queued = input.readInt();
+        for (int i = 0; i < queued; i++) {
+            messageQueue.add(messages[input.readInt()]);
+        }
     }
 
     /**
@@ -141,12 +316,41 @@ public class Node {
         return position;
     }
 
+    /**
+     * Method: getIndex
+     * Description: Returns the index of the node in the environment.
+     * @return index
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Method: getRandom
+     * Description: Returns the random stream of the node. Only the messages at
+     * this node draw from it, so it is never used by two threads at once.
+     * @return random
+     */
+    public SplitMixRandom getRandom() {
+        return random;
+    }
+
+    /**
+     * Method: getEnvironment
+     * Description: Returns the environment the node belongs to, used to look
+     * up other nodes by index.
+     * @return environment
+     */
+    public Environment getEnvironment() {
+        return environment;
+    }
+
     /**
      * Method: getRoutingTable
      * description: Returns the routingTable that belong to this node.
      * @return routingTable
      */
-     public HashMap<Integer, Routing> getRoutingTable() {
+     public RoutingTable getRoutingTable() {
         return routingTable;
     }
 
@@ -157,7 +361,7 @@ public class Node {
      * @return
      */
     public boolean isContainsEvent(int eventID) {
-         return eventTable.containsKey(eventID);
+         return eventTable.contains(eventID);
     }
 
 }
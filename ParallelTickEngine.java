@@ -0,0 +1,389 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The ParallelTickEngine class sends the messages of one time step on many
+ * cores. The nodes are split into partitions of consecutive indices and every
+ * partition is handled by one task in a ForkJoinPool.
+ *
+ * A time step runs in phases with a barrier between them:
+ * 1. Propose, in parallel: every node with messages drops its expired messages and lets
+ *    the message at the front choose a target, reading the busy status as it
+ *    was at the start of the step.
+ * 2. Resolve, sequentially in node order: a move that needs the target to be
+ *    free wins only if the target wasn't busy and no node with a lower index
+ *    proposed to move into it or is the target itself and sending. Moves that
+ *    don't need the target to be free always win.
+ * 3. Commit, in parallel by the partition of the target: the winning messages
+ *    move and get queued at their targets, in the order of their source index.
+ * 4. Finish, in parallel by the partition of the source: the sent messages
+ *    are removed from the front of their queues.
+ *
+ * Which moves win only depends on the proposals, never on the number of
+ * threads or how they are scheduled, so a run gives the same result on any
+ * number of threads as long as the messages choose their targets the same way.
+ *
+ * In a partitioned simulation the engine only has the messages of its own
+ * region, and a Halo connects it to the other regions. After proposing, the
+ * proposals into nodes of other regions are sent there and the proposals
+ * into local nodes arrive, and are resolved with the local ones in node
+ * order. After committing, the regions tell each other which of the sent
+ * proposals won. This gives the same moves as one engine for all nodes.
+ *
+ * @since 2023-05-25
+ */
+public class ParallelTickEngine {
+    /**
+     * Partitions are made of whole blocks of this many nodes.
+     */
+    private static final int BLOCK_SIZE = 64;
+    private static final int PARTITIONS_PER_THREAD = 4;
+    private static final int NONE = Integer.MAX_VALUE;
+
+    private final ArrayList<Node> nodes;
+    private final ActiveSet activeNodes;
+    private final Halo halo;
+    private final ForkJoinPool pool;
+    private final int partitions;
+    private final int[] partitionStart;
+    private final int[] blockPartition;
+
+    /*Per source node, written by the partition of the source in the propose phase*/
+    private final Message[] proposedMessage;
+    private final int[] targetOf;
+    private final int[] proposers;
+    private final int[] proposerCount;
+    private final boolean[] accepted;
+    private final int[] moved;
+
+    /*Sources whose target is in another region, and sources in another region whose target is here*/
+    private int[] leaving = new int[0];
+    private int[] arriving = new int[0];
+
+    /*Written by the resolve phase*/
+    private final int[] firstProposer;
+    private final int[] commitOrder;
+    private final int[] commitStart;
+    private final int[] commitFill;
+
+    /**
+     * Constructs an engine for the given nodes.
+     *
+     * @param nodes The nodes of the environment, indexed by node index.
+     * @param activeNodes The nodes that have messages in their queues.
+     * @param threads The number of threads to use.
+     */
+    public ParallelTickEngine(ArrayList<Node> nodes, ActiveSet activeNodes, int threads) {
+        this(nodes, activeNodes, threads, null);
+    }
+
+    /**
+     * Constructs an engine for the nodes of one region of a partitioned simulation.
+     *
+     * @param nodes The nodes of the environment, indexed by node index.
+     * @param activeNodes The nodes that have messages in their queues, only nodes of the region.
+     * @param threads The number of threads to use.
+     * @param halo The connection to the other regions, or null if there are none.
+     */
+    public ParallelTickEngine(ArrayList<Node> nodes, ActiveSet activeNodes, int threads, Halo halo) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("Number of threads must be positive: " + threads);
+        }
+        this.nodes = nodes;
+        this.activeNodes = activeNodes;
+        this.halo = halo;
+        int size = nodes.size();
+        int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        this.partitions = Math.max(1, Math.min(blocks, threads * PARTITIONS_PER_THREAD));
+        this.partitionStart = new int[partitions + 1];
+        for (int p = 0; p <= partitions; p++) {
+            partitionStart[p] = Math.min(size, (int) ((long) blocks * p / partitions) * BLOCK_SIZE);
+        }
+        this.blockPartition = new int[blocks];
+        for (int p = 0; p < partitions; p++) {
+            Arrays.fill(blockPartition, partitionStart[p] / BLOCK_SIZE,
+                    (partitionStart[p + 1] + BLOCK_SIZE - 1) / BLOCK_SIZE, p);
+        }
+        this.pool = new ForkJoinPool(threads);
+
+        proposedMessage = new Message[size];
+        targetOf = new int[size];
+        proposers = new int[size];
+        proposerCount = new int[partitions];
+        accepted = new boolean[size];
+        moved = new int[partitions];
+        firstProposer = new int[size];
+        Arrays.fill(firstProposer, NONE);
+        commitOrder = new int[size];
+        commitStart = new int[partitions + 1];
+        commitFill = new int[partitions];
+    }
+
+    /**
+     * Sends the messages of all nodes for one time step.
+     *
+     * @return The number of messages that moved from the nodes of this engine.
+     */
+    public int sendMessages() {
+        pool.invoke(new PhaseTask(Phase.PROPOSE, 0, partitions));
+        if (halo != null) {
+            exchangeProposals();
+        }
+        resolve();
+        pool.invoke(new PhaseTask(Phase.COMMIT, 0, partitions));
+        if (halo != null) {
+            halo.exchangeAcceptance(accepted);
+        }
+        pool.invoke(new PhaseTask(Phase.FINISH, 0, partitions));
+        int count = 0;
+        for (int partition = 0; partition < partitions; partition++) {
+            count += moved[partition];
+        }
+        return count;
+    }
+
+    /**
+     * Stops the threads of the engine.
+     */
+    public void shutdown() {
+        pool.shutdown();
+    }
+
+    private void propose(int partition) {
+        int count = 0;
+        int first = partitionStart[partition];
+        int end = partitionStart[partition + 1];
+        for (int source = activeNodes.nextSetBit(first); source >= 0 && source < end;
+             source = activeNodes.nextSetBit(source + 1)) {
+            Message message = nodes.get(source).nextMessage();
+            if (message == null) {
+                activeNodes.remove(source);
+                continue;
+            }
+            Node target = message.selectTarget();
+            if (target != null) {
+                proposedMessage[source] = message;
+                targetOf[source] = target.getIndex();
+                proposers[first + count++] = source;
+            } else if (Metrics.ENABLED) {
+                nodes.get(source).getEnvironment().getMetrics().blockedSends.increment();
+            }
+        }
+        proposerCount[partition] = count;
+    }
+
+    /**
+     * Sends the proposals into other regions and adds the proposals arriving
+     * from other regions to the proposers of the partition of their source,
+     * keeping every partition in source order.
+     */
+    private void exchangeProposals() {
+        if (leaving.length < nodes.size()) {
+            leaving = new int[nodes.size()];
+            arriving = new int[nodes.size()];
+        }
+        int leavingCount = 0;
+        for (int p = 0; p < partitions; p++) {
+            for (int k = partitionStart[p]; k < partitionStart[p] + proposerCount[p]; k++) {
+                int source = proposers[k];
+                if (!halo.isLocal(targetOf[source])) {
+                    leaving[leavingCount++] = source;
+                }
+            }
+        }
+        int arrivingCount = halo.exchangeProposals(leaving, leavingCount, proposedMessage, targetOf, arriving);
+
+        int end = arrivingCount;
+        while (end > 0) {
+            int p = partitionOf(arriving[end - 1]);
+            int begin = end - 1;
+            while (begin > 0 && partitionOf(arriving[begin - 1]) == p) {
+                begin--;
+            }
+            /*Merge from the back, the arriving sources are nodes of other regions so they fit*/
+            int local = partitionStart[p] + proposerCount[p] - 1;
+            int write = local + end - begin;
+            for (int a = end - 1; a >= begin; a--) {
+                while (local >= partitionStart[p] && proposers[local] > arriving[a]) {
+                    proposers[write--] = proposers[local--];
+                }
+                proposers[write--] = arriving[a];
+            }
+            proposerCount[p] += end - begin;
+            end = begin;
+        }
+    }
+
+    private void resolve() {
+        /*The lowest node that moves into or sends from each node*/
+        for (int p = 0; p < partitions; p++) {
+            for (int k = partitionStart[p]; k < partitionStart[p] + proposerCount[p]; k++) {
+                int source = proposers[k];
+                int target = targetOf[source];
+                if (firstProposer[target] == NONE) {
+                    firstProposer[target] = source;
+                }
+                if (firstProposer[source] == NONE) {
+                    firstProposer[source] = source;
+                }
+            }
+        }
+
+        /*Count the winning moves per partition of the target*/
+        Arrays.fill(commitStart, 0);
+        for (int p = 0; p < partitions; p++) {
+            for (int k = partitionStart[p]; k < partitionStart[p] + proposerCount[p]; k++) {
+                int source = proposers[k];
+                int target = targetOf[source];
+                if (halo != null && !halo.isLocal(target)) {
+                    /*Decided by the region of the target*/
+                    accepted[source] = false;
+                    continue;
+                }
+                accepted[source] = !proposedMessage[source].claimsTarget()
+                        || (!nodes.get(target).getBusyStatus() && firstProposer[target] == source);
+                if (accepted[source]) {
+                    commitStart[partitionOf(target) + 1]++;
+                } else if (Metrics.ENABLED && (halo == null || halo.isLocal(source))) {
+                    nodes.get(source).getEnvironment().getMetrics().blockedSends.increment();
+                }
+            }
+        }
+        for (int p = 0; p < partitions; p++) {
+            commitStart[p + 1] += commitStart[p];
+        }
+
+        /*Place the winning moves by target partition, keeping the source order*/
+        System.arraycopy(commitStart, 0, commitFill, 0, partitions);
+        for (int p = 0; p < partitions; p++) {
+            for (int k = partitionStart[p]; k < partitionStart[p] + proposerCount[p]; k++) {
+                int source = proposers[k];
+                int target = targetOf[source];
+                firstProposer[target] = NONE;
+                firstProposer[source] = NONE;
+                if (accepted[source]) {
+                    commitOrder[commitFill[partitionOf(target)]++] = source;
+                }
+            }
+        }
+    }
+
+    private void commit(int partition) {
+        for (int k = commitStart[partition]; k < commitStart[partition + 1]; k++) {
+            int source = commitOrder[k];
+            proposedMessage[source].moveTo(nodes.get(targetOf[source]));
+        }
+    }
+
+    private void finish(int partition) {
+        int first = partitionStart[partition];
+        int count = 0;
+        for (int k = first; k < first + proposerCount[partition]; k++) {
+            int source = proposers[k];
+            if (halo != null && !halo.isLocal(source)) {
+                /*Arrived from another region, which finishes the send*/
+                proposedMessage[source] = null;
+                continue;
+            }
+            if (accepted[source]) {
+                Node node = nodes.get(source);
+                node.completeSend();
+                count++;
+                if (!node.hasMessages()) {
+                    activeNodes.remove(source);
+                }
+                if (halo != null && !halo.isLocal(targetOf[source])) {
+                    proposedMessage[source].detach();
+                }
+            } else if (Metrics.ENABLED && halo != null && !halo.isLocal(targetOf[source])) {
+                nodes.get(source).getEnvironment().getMetrics().blockedSends.increment();
+            }
+            proposedMessage[source] = null;
+        }
+        moved[partition] = count;
+    }
+
+    private int partitionOf(int nodeIndex) {
+        return blockPartition[nodeIndex / BLOCK_SIZE];
+    }
+
+    private enum Phase { PROPOSE, COMMIT, FINISH }
+
+    /**
+     * The Halo interface connects the engine of one region of a partitioned
+     * simulation to the engines of the other regions.
+     */
+    public interface Halo {
+
+        /**
+         * Checks if a node belongs to the region of this engine.
+         *
+         * @param nodeIndex The index of the node.
+         * @return True if the node is in this region.
+         */
+        boolean isLocal(int nodeIndex);
+
+        /**
+         * Sends the proposals into nodes of other regions to those regions,
+         * and receives the proposals of other regions into nodes of this one.
+         * The arriving messages and their targets are stored at the index of
+         * their source, which is a node of another region.
+         *
+         * @param leaving The local sources whose target is in another region, in ascending order.
+         * @param leavingCount The number of leaving sources.
+         * @param messages The proposed message of every source.
+         * @param targets The target of every source.
+         * @param arriving Where the sources of the arriving proposals are written, in ascending order.
+         * @return The number of arriving proposals.
+         */
+        int exchangeProposals(int[] leaving, int leavingCount, Message[] messages, int[] targets, int[] arriving);
+
+        /**
+         * Tells the other regions which of their proposals won, and sets
+         * whether the leaving proposals won.
+         *
+         * @param accepted Whether the proposal of every source won.
+         */
+        void exchangeAcceptance(boolean[] accepted);
+    }
+
+    /**
+     * Runs one phase for a range of partitions, splitting the range in halves
+     * until every task has one partition.
+     */
+    private final class PhaseTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Phase phase;
+        private final int from;
+        private final int to;
+
+        private PhaseTask(Phase phase, int from, int to) {
+            this.phase = phase;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new PhaseTask(phase, from, middle), new PhaseTask(phase, middle, to));
+                return;
+            }
+            switch (phase) {
+                case PROPOSE:
+                    propose(from);
+                    break;
+                case COMMIT:
+                    commit(from);
+                    break;
+                case FINISH:
+                    finish(from);
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+import java.util.Arrays;
+
+/**
+ * The Partition class splits the nodes of a topology into regions of the
+ * plane, one for every process of a partitioned simulation. The regions are
+ * vertical strips with the same number of nodes, so only nodes near the edge
+ * of a strip have neighbours in another region.
+ *
+ * Every process computes the partition from the same topology and gets the
+ * same regions.
+ *
+ * @since 2023-05-25
+ */
+public class Partition {
+    private final int[] regionOf;
+    private final int regions;
+
+    /**
+     * Constructs a partition of the nodes into strips ordered by x.
+     *
+     * @param topology The topology to split.
+     * @param regions The number of regions.
+     */
+    public Partition(Topology topology, int regions) {
+        if (regions < 1) {
+            throw new IllegalArgumentException("Number of regions must be positive: " + regions);
+        }
+        int size = topology.size();
+        this.regions = regions;
+        this.regionOf = new int[size];
+
+        /*x in the high half and the node index in the low half, so ties are split by index*/
+        long[] order = new long[size];
+        for (int nodeIndex = 0; nodeIndex < size; nodeIndex++) {
+            order[nodeIndex] = ((long) topology.getPosition(nodeIndex).getX() << 32) | nodeIndex;
+        }
+        Arrays.sort(order);
+        for (int i = 0; i < size; i++) {
+            regionOf[(int) order[i]] = (int) ((long) i * regions / size);
+        }
+    }
+
+    /**
+     * Gets the region a node belongs to.
+     *
+     * @param nodeIndex The index of the node.
+     * @return The region, from 0 up to the number of regions.
+     */
+    public int regionOf(int nodeIndex) {
+        return regionOf[nodeIndex];
+    }
+
+    /**
+     * Gets the number of regions.
+     *
+     * @return The number of regions.
+     */
+    public int regions() {
+        return regions;
+    }
+
+    /**
+     * Gets the number of nodes in a region.
+     *
+     * @param region The region.
+     * @return The number of nodes.
+     */
+    public int size(int region) {
+        int count = 0;
+        for (int r : regionOf) {
+            if (r == region) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,199 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * The PartitionCoordinator class runs a simulation split into vertical
+ * strips of the plane, every strip simulated by a PartitionWorker process of
+ * its own on this machine. The workers exchange the messages crossing from
+ * one strip into another over loopback connections every time step, and the
+ * coordinator only agrees the next time step with them, prints the found
+ * events in the order one environment would and adds up the counters at the
+ * end.
+ *
+ * With the same seed the output is the same as Environment.main with the
+ * parallel engine, for any number of workers and threads per worker.
+ * Checkpoints and metrics aren't supported; the retention policy and the
+ * walk are read from the same properties as in Environment.main, and the options given in
+ * rumor.partition.jvmOptions are passed to the worker processes.
+ *
+ * Usage: java PartitionCoordinator topologyFile workers [radioRange] [threadsPerWorker] [seed] [timeSteps]
+ *
+ * @since 2023-05-25
+ */
+public class PartitionCoordinator {
+    /**
+     * How long to wait for a worker to connect, in milliseconds.
+     */
+    private static final int ACCEPT_TIMEOUT = 60000;
+    private static final Comparator<FoundEvent> BY_REQUEST = Comparator.comparingInt(FoundEvent::getRequestId);
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path topologyFile = Path.of(args[0]).toAbsolutePath();
+        int workers = Integer.parseInt(args[1]);
+        int radioRange = args.length > 2 ? Integer.parseInt(args[2]) : Environment.DEFAULT_RADIO_RANGE;
+        int threads = args.length > 3 ? Integer.parseInt(args[3]) : 1;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : new SplittableRandom().nextLong();
+        int timeSteps = args.length > 5 ? Integer.parseInt(args[5]) : 10000;
+        if (workers < 1 || threads < 1 || timeSteps < 0) {
+            throw new IllegalArgumentException("Workers and threads must be positive and time steps not negative: "
+                    + workers + ", " + threads + ", " + timeSteps);
+        }
+        RetentionPolicy retention = new RetentionPolicy(Integer.getInteger("rumor.retention.maxEntries", 0),
+                Integer.getInteger("rumor.retention.maxAge", 0),
+                RetentionPolicy.Eviction.parse(System.getProperty("rumor.retention.eviction", "lru")));
+        WalkStrategy walkStrategy = new WalkStrategy(WalkStrategy.Kind.parse(System.getProperty("rumor.walk", "uniform")),
+                Integer.getInteger("rumor.walk.window", WalkStrategy.DEFAULT_WINDOW));
+
+        List<Process> processes = new ArrayList<>();
+        Socket[] sockets = new Socket[workers];
+        ResultSink results = new AsyncResultWriter(System.out);
+        try (ServerSocket server = new ServerSocket(0, workers, InetAddress.getLoopbackAddress())) {
+            server.setSoTimeout(ACCEPT_TIMEOUT);
+            for (int region = 0; region < workers; region++) {
+                processes.add(startWorker(server.getLocalPort(), region));
+            }
+
+            DataInputStream[] inputs = new DataInputStream[workers];
+            DataOutputStream[] outputs = new DataOutputStream[workers];
+            int[] ports = new int[workers];
+            for (int i = 0; i < workers; i++) {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                int region = input.readInt();
+                if (region < 0 || region >= workers || sockets[region] != null) {
+                    throw new IOException("Unexpected worker for region " + region);
+                }
+                sockets[region] = socket;
+                inputs[region] = input;
+                outputs[region] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                ports[region] = input.readInt();
+            }
+
+            for (DataOutputStream output : outputs) {
+                output.writeUTF(topologyFile.toString());
+                output.writeInt(radioRange);
+                output.writeLong(seed);
+                output.writeInt(Environment.DEFAULT_AGENT_DURATION);
+                output.writeInt(Environment.DEFAULT_REQUEST_DURATION);
+                output.writeInt(Environment.DEFAULT_REQUEST_NODES);
+                output.writeInt(threads);
+                output.writeInt(timeSteps);
+                retention.writeState(output);
+                walkStrategy.writeState(output);
+                output.writeInt(workers);
+                for (int port : ports) {
+                    output.writeInt(port);
+                }
+                output.flush();
+            }
+
+            /*Like Environment.simulate, every agreed time step but the end is run, which takes the time one further*/
+            ArrayList<FoundEvent> found = new ArrayList<>();
+            int time = 0;
+            while (time < timeSteps) {
+                int nextTime = Integer.MAX_VALUE;
+                for (DataInputStream input : inputs) {
+                    nextTime = Math.min(nextTime, input.readInt());
+                    readResults(input, found);
+                }
+                passOn(found, results);
+                for (DataOutputStream output : outputs) {
+                    output.writeInt(nextTime);
+                    output.flush();
+                }
+                time = nextTime == timeSteps ? nextTime : nextTime + 1;
+            }
+
+            int nodes = 0;
+            int events = 0;
+            int sentRequests = 0;
+            int foundEvents = 0;
+            for (int region = 0; region < workers; region++) {
+                DataInputStream input = inputs[region];
+                readResults(input, found);
+                int regionNodes = input.readInt();
+                int regionEvents = input.readInt();
+                int regionSentRequests = input.readInt();
+                if (region > 0 && (regionNodes != nodes || regionEvents != events
+                        || regionSentRequests != sentRequests)) {
+                    throw new IOException("Region " + region + " disagrees on the number of nodes, events or requests");
+                }
+                nodes = regionNodes;
+                events = regionEvents;
+                sentRequests = regionSentRequests;
+                foundEvents += input.readInt();
+            }
+            passOn(found, results);
+            results.close();
+            System.out.println("Number of nodes created: " + nodes + "\n" +
+                    "Number of events created: " + events + "\n" +
+                    "Number of sent request: " + sentRequests + "\n" +
+                    "Number of found events: " + foundEvents);
+
+            for (Process process : processes) {
+                if (process.waitFor() != 0) {
+                    throw new IOException("Worker exited with " + process.exitValue());
+                }
+            }
+        } finally {
+            results.close();
+            for (Socket socket : sockets) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+            for (Process process : processes) {
+                process.destroy();
+            }
+        }
+    }
+
+    private static void readResults(DataInputStream input, List<FoundEvent> found) throws IOException {
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            found.add(PartitionLink.readResult(input));
+        }
+    }
+
+    /**
+     * Passes the events found in one time step on in the order the requests
+     * were registered, the order one environment hands them to its sink.
+     */
+    private static void passOn(List<FoundEvent> found, ResultSink results) {
+        found.sort(BY_REQUEST);
+        for (FoundEvent result : found) {
+            results.accept(result);
+        }
+        found.clear();
+    }
+
+    /**
+     * Starts a worker process with the same Java and class path as this process.
+     */
+    private static Process startWorker(int coordinatorPort, int region) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(ProcessHandle.current().info().command().orElse("java"));
+        String jvmOptions = System.getProperty("rumor.partition.jvmOptions", "").trim();
+        if (!jvmOptions.isEmpty()) {
+            command.addAll(List.of(jvmOptions.split("\\s+")));
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(PartitionWorker.class.getName());
+        command.add(Integer.toString(coordinatorPort));
+        command.add(Integer.toString(region));
+        return new ProcessBuilder(command).inheritIO().start();
+    }
+}
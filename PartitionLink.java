@@ -0,0 +1,332 @@
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The PartitionLink class connects the environment of one region of a
+ * partitioned simulation to the other regions and to the coordinator. Every
+ * time step the regions exchange, through the HaloExchange:
+ * 1. The nodes requests made busy before the messages are sent, and the
+ *    nodes that get an event, so every region numbers the events the same way.
+ * 2. The messages proposed to move into a node of another region, and the
+ *    requests that timed out in a region other than the one they were sent from.
+ * 3. Which of the proposed moves won.
+ * Between two time steps every region tells the coordinator the next time
+ * step it has something to do in and the events its requests found, and
+ * the coordinator answers with the next time step of the simulation.
+ *
+ * The link is the result sink of its environment, it collects the found
+ * events until they are sent to the coordinator.
+ *
+ * @since 2023-05-25
+ */
+public class PartitionLink implements ParallelTickEngine.Halo, ResultSink {
+    private final Environment environment;
+    private final Partition partition;
+    private final int region;
+    private final HaloExchange halo;
+    private final DataInputStream coordinatorInput;
+    private final DataOutputStream coordinatorOutput;
+    private final ArrayList<FoundEvent> results = new ArrayList<>();
+    private final ArrayList<Request> timedOut = new ArrayList<>();
+
+    /*The proposals of the last exchange, kept to match the answers to them*/
+    private int[] leaving;
+    private int leavingCount;
+    private int[] targets;
+    private int[] arriving;
+    private int arrivingCount;
+
+    /**
+     * Constructs a link for the environment of a region.
+     *
+     * @param environment The environment of the region.
+     * @param partition The regions of the nodes.
+     * @param region The region of the environment.
+     * @param halo The connections to the processes of the other regions, indexed by region.
+     * @param coordinatorInput Where the answers of the coordinator are read from.
+     * @param coordinatorOutput Where the coordinator is written to.
+     */
+    public PartitionLink(Environment environment, Partition partition, int region, HaloExchange halo,
+                         DataInputStream coordinatorInput, DataOutputStream coordinatorOutput) {
+        if (halo.processes() != partition.regions() || halo.index() != region) {
+            throw new IllegalArgumentException("Connections don't match region " + region
+                    + " of " + partition.regions());
+        }
+        this.environment = environment;
+        this.partition = partition;
+        this.region = region;
+        this.halo = halo;
+        this.coordinatorInput = coordinatorInput;
+        this.coordinatorOutput = coordinatorOutput;
+    }
+
+    @Override
+    public boolean isLocal(int nodeIndex) {
+        return partition.regionOf(nodeIndex) == region;
+    }
+
+    /**
+     * Tells the other regions which nodes requests made busy and which nodes
+     * get an event this time step, and learns the same from them. The busy
+     * nodes of other regions are made busy here as well, and the nodes of all
+     * regions that get an event are merged in node order.
+     *
+     * @param claims The nodes of this region made busy this time step.
+     * @param claimCount The number of busy nodes.
+     * @param eventNodes The nodes of this region that get an event, in node
+     *                   order, with room for every node of the environment.
+     * @param eventCount The number of nodes that get an event.
+     * @return The number of nodes of all regions that get an event, now in eventNodes.
+     */
+    public int exchangeEvents(int[] claims, int claimCount, int[] eventNodes, int eventCount) {
+        ByteArrayDataOutput output = new ByteArrayDataOutput(8 + 4 * (claimCount + eventCount));
+        writeInts(output, claims, claimCount);
+        writeInts(output, eventNodes, eventCount);
+        byte[] frame = output.toByteArray();
+        byte[][] frames = new byte[partition.regions()][];
+        Arrays.fill(frames, frame);
+
+        byte[][] received = halo.exchange(frames);
+        int total = eventCount;
+        try {
+            for (int peer = 0; peer < received.length; peer++) {
+                if (peer == region) {
+                    continue;
+                }
+                ByteArrayDataInput input = new ByteArrayDataInput(received[peer], received[peer].length);
+                int peerClaims = input.readInt();
+                for (int i = 0; i < peerClaims; i++) {
+                    environment.getNode(input.readInt()).setBusyStatus(true);
+                }
+                int peerEvents = input.readInt();
+                for (int i = 0; i < peerEvents; i++) {
+                    eventNodes[total++] = input.readInt();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Malformed events from another region", e);
+        }
+        Arrays.sort(eventNodes, 0, total);
+        return total;
+    }
+
+    /**
+     * Sends the leaving proposals to the regions of their targets, and with
+     * them the requests that timed out here but were sent from another
+     * region. The requests that timed out elsewhere and were sent from here
+     * are reported to the registry of this environment.
+     */
+    @Override
+    public int exchangeProposals(int[] leaving, int leavingCount, Message[] messages, int[] targets, int[] arriving) {
+        int regions = partition.regions();
+        environment.getRequestRegistry().takeTimedOutElsewhere(partition, region, timedOut);
+        int[] proposalCounts = new int[regions];
+        int[] timeoutCounts = new int[regions];
+        for (int i = 0; i < leavingCount; i++) {
+            proposalCounts[partition.regionOf(targets[leaving[i]])]++;
+        }
+        for (Request request : timedOut) {
+            timeoutCounts[partition.regionOf(request.getSourceNode().getIndex())]++;
+        }
+
+        byte[][] frames = new byte[regions][];
+        try {
+            ByteArrayDataOutput[] outputs = new ByteArrayDataOutput[regions];
+            for (int peer = 0; peer < regions; peer++) {
+                if (peer != region) {
+                    outputs[peer] = new ByteArrayDataOutput(64);
+                    outputs[peer].writeInt(proposalCounts[peer]);
+                }
+            }
+            for (int i = 0; i < leavingCount; i++) {
+                int source = leaving[i];
+                ByteArrayDataOutput output = outputs[partition.regionOf(targets[source])];
+                output.writeInt(source);
+                output.writeInt(targets[source]);
+                Environment.writeMessage(output, messages[source]);
+            }
+            for (int peer = 0; peer < regions; peer++) {
+                if (peer != region) {
+                    outputs[peer].writeInt(timeoutCounts[peer]);
+                }
+            }
+            for (Request request : timedOut) {
+                Environment.writeMessage(outputs[partition.regionOf(request.getSourceNode().getIndex())], request);
+            }
+            timedOut.clear();
+            for (int peer = 0; peer < regions; peer++) {
+                if (peer != region) {
+                    frames[peer] = outputs[peer].toByteArray();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Writing messages failed", e);
+        }
+
+        byte[][] received = halo.exchange(frames);
+        int count = 0;
+        try {
+            for (int peer = 0; peer < regions; peer++) {
+                if (peer == region) {
+                    continue;
+                }
+                ByteArrayDataInput input = new ByteArrayDataInput(received[peer], received[peer].length);
+                int proposals = input.readInt();
+                for (int i = 0; i < proposals; i++) {
+                    int source = input.readInt();
+                    targets[source] = input.readInt();
+                    messages[source] = environment.readMessage(input);
+                    arriving[count++] = source;
+                }
+                int timeouts = input.readInt();
+                for (int i = 0; i < timeouts; i++) {
+                    Message message = environment.readMessage(input);
+                    if (!(message instanceof Request)) {
+                        throw new IOException("Timed out message is not a request");
+                    }
+                    environment.getRequestRegistry().reportTimedOut((Request) message);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Malformed messages from another region", e);
+        }
+        Arrays.sort(arriving, 0, count);
+
+        this.leaving = leaving;
+        this.leavingCount = leavingCount;
+        this.targets = targets;
+        this.arriving = arriving;
+        this.arrivingCount = count;
+        return count;
+    }
+
+    /**
+     * Answers every region with whether its proposals won, in the order it
+     * sent them, which is source order, and reads the answers to the
+     * proposals sent from here the same way.
+     */
+    @Override
+    public void exchangeAcceptance(boolean[] accepted) {
+        int regions = partition.regions();
+        ByteArrayDataOutput[] outputs = new ByteArrayDataOutput[regions];
+        for (int peer = 0; peer < regions; peer++) {
+            if (peer != region) {
+                outputs[peer] = new ByteArrayDataOutput(16);
+            }
+        }
+        for (int i = 0; i < arrivingCount; i++) {
+            int source = arriving[i];
+            outputs[partition.regionOf(source)].writeBoolean(accepted[source]);
+        }
+        byte[][] frames = new byte[regions][];
+        for (int peer = 0; peer < regions; peer++) {
+            if (peer != region) {
+                frames[peer] = outputs[peer].toByteArray();
+            }
+        }
+
+        byte[][] received = halo.exchange(frames);
+        ByteArrayDataInput[] inputs = new ByteArrayDataInput[regions];
+        for (int peer = 0; peer < regions; peer++) {
+            if (peer != region) {
+                inputs[peer] = new ByteArrayDataInput(received[peer], received[peer].length);
+            }
+        }
+        try {
+            for (int i = 0; i < leavingCount; i++) {
+                int source = leaving[i];
+                accepted[source] = inputs[partition.regionOf(targets[source])].readBoolean();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Malformed answers from another region", e);
+        }
+    }
+
+    /**
+     * Collects a found event until the next time step is agreed on.
+     */
+    @Override
+    public void accept(FoundEvent result) {
+        results.add(result);
+    }
+
+    /**
+     * Sends the coordinator the next time step this region has something to
+     * do in and the events found since the last call, and waits for the
+     * next time step of the simulation.
+     *
+     * @param nextTime The next time step of this region.
+     * @return The next time step of the simulation, the earliest of all regions.
+     * @throws UncheckedIOException If the connection to the coordinator fails.
+     */
+    public int agreeOnTime(int nextTime) {
+        try {
+            coordinatorOutput.writeInt(nextTime);
+            sendResults();
+            coordinatorOutput.flush();
+            return coordinatorInput.readInt();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Agreeing on the time step failed", e);
+        }
+    }
+
+    /**
+     * Sends the coordinator the events found in the last time step and the
+     * counters of this region at the end of the simulation.
+     *
+     * @throws IOException If writing fails.
+     */
+    public void sendTotals() throws IOException {
+        sendResults();
+        coordinatorOutput.writeInt(environment.getNumberOfNodes());
+        coordinatorOutput.writeInt(environment.getNumberOfEvents());
+        coordinatorOutput.writeInt(environment.getNumberOfSentRequests());
+        coordinatorOutput.writeInt(environment.getNumberOfFoundEvents());
+        coordinatorOutput.flush();
+    }
+
+    private void sendResults() throws IOException {
+        coordinatorOutput.writeInt(results.size());
+        for (FoundEvent result : results) {
+            writeResult(coordinatorOutput, result);
+        }
+        results.clear();
+    }
+
+    /**
+     * Writes a found event the way the coordinator reads it.
+     *
+     * @param output Where the event is written.
+     * @param result The found event.
+     * @throws IOException If writing fails.
+     */
+    public static void writeResult(DataOutputStream output, FoundEvent result) throws IOException {
+        output.writeInt(result.getRequestId());
+        output.writeInt(result.getEventID());
+        output.writeInt(result.getX());
+        output.writeInt(result.getY());
+        output.writeInt(result.getCreatedTime());
+    }
+
+    /**
+     * Reads a found event written by writeResult.
+     *
+     * @param input Where the event is read from.
+     * @return The found event.
+     * @throws IOException If reading fails.
+     */
+    public static FoundEvent readResult(DataInputStream input) throws IOException {
+        return new FoundEvent(input.readInt(), input.readInt(), input.readInt(), input.readInt(), input.readInt());
+    }
+
+    private static void writeInts(ByteArrayDataOutput output, int[] values, int count) {
+        output.writeInt(count);
+        for (int i = 0; i < count; i++) {
+            output.writeInt(values[i]);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Path;
+
+/**
+ * The PartitionWorker class is the process that simulates one region of a
+ * partitioned simulation. It is started by the PartitionCoordinator, gets
+ * the parameters of the simulation from it, connects to the workers of the
+ * other regions and runs its region in lockstep with them.
+ *
+ * Usage: java PartitionWorker coordinatorPort region
+ *
+ * @since 2023-05-25
+ */
+public class PartitionWorker {
+    public static void main(String[] args) throws IOException {
+        int coordinatorPort = Integer.parseInt(args[0]);
+        int region = Integer.parseInt(args[1]);
+
+        try (Socket coordinator = new Socket(InetAddress.getLoopbackAddress(), coordinatorPort);
+             ServerSocket server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress())) {
+            coordinator.setTcpNoDelay(true);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(coordinator.getInputStream()));
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(coordinator.getOutputStream()));
+            output.writeInt(region);
+            output.writeInt(server.getLocalPort());
+            output.flush();
+
+            Path topologyFile = Path.of(input.readUTF());
+            int radioRange = input.readInt();
+            long seed = input.readLong();
+            int agentDuration = input.readInt();
+            int requestDuration = input.readInt();
+            int requestNodes = input.readInt();
+            int threads = input.readInt();
+            int timeSteps = input.readInt();
+            RetentionPolicy retention = RetentionPolicy.readState(input);
+            WalkStrategy walkStrategy = WalkStrategy.readState(input);
+            int[] ports = new int[input.readInt()];
+            for (int i = 0; i < ports.length; i++) {
+                ports[i] = input.readInt();
+            }
+
+            Topology topology = TopologyFiles.read(topologyFile, radioRange);
+            Environment environment = new Environment(topology, seed, agentDuration, requestDuration, requestNodes);
+            environment.setRetention(retention);
+            environment.setWalkStrategy(walkStrategy);
+            Partition partition = new Partition(topology, ports.length);
+            try (HaloExchange halo = new HaloExchange(region, server, ports)) {
+                PartitionLink link = new PartitionLink(environment, partition, region, halo, input, output);
+                environment.setResultSink(link);
+                environment.partition(partition, region, link, threads);
+                environment.simulate(timeSteps);
+                link.sendTotals();
+            }
+        }
+    }
+}
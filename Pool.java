@@ -0,0 +1,65 @@
+import java.util.Arrays;
+
+/**
+ * The Pool class keeps objects that are no longer used so they can be used
+ * again instead of allocating new ones. Objects can be released from several
+ * threads at the same time.
+ *
+ * @param <T> The type of the pooled objects.
+ * @since 2023-05-25
+ */
+public class Pool<T> {
+    private Object[] items = new Object[16];
+    private int size;
+
+    /**
+     * Takes an object from the pool.
+     *
+     * @return An object that was released earlier, or null if the pool is empty.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T acquire() {
+        if (size == 0) {
+            return null;
+        }
+        T item = (T) items[--size];
+        items[size] = null;
+        return item;
+    }
+
+    /**
+     * Puts an object that is no longer used into the pool.
+     *
+     * @param item The object.
+     */
+    public synchronized void release(T item) {
+        if (size == items.length) {
+            items = Arrays.copyOf(items, size * 2);
+        }
+        items[size++] = item;
+    }
+
+    /**
+     * Gets a pooled object without taking it, the one with the highest index
+     * is taken first.
+     *
+     * @param index The index of the object, below size.
+     * @return The object.
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized T get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + size);
+        }
+        return (T) items[index];
+    }
+
+    /**
+     * Gets the number of objects in the pool.
+     *
+     * @return The number of pooled objects.
+     */
+    public synchronized int size() {
+        return size;
+    }
+}
@@ -0,0 +1,215 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The ReplicaSweep class runs many independent simulations for every
+ * combination of radio range, agent duration, request duration, number of
+ * request nodes, retention policy and walk, and prints statistics of the results per
+ * combination. Next to the found ratio it prints the routes the nodes hold
+ * at the end and how many were evicted or expired, which shows what a
+ * retention policy saves in memory and what it costs in found events, and
+ * the mean hops a returned request took to find its event, which shows how
+ * much a walk saves compared to the uniform one.
+ *
+ * The topology is read and its neighbours found once per radio range, all
+ * replicas share it. Every replica is a sequential Environment with its own
+ * seed. The replicas of all combinations are handed to a fixed number of
+ * threads at once, so threads don't wait for the last replica of one
+ * combination before starting the next, and the statistics are printed in
+ * the order of the combinations as they complete. Replica r gets the same
+ * seed at every combination, and a replica gives the same result as
+ * Environment.main with that seed and the same parameters.
+ *
+ * Usage: java ReplicaSweep topologyFile [replicas] [threads] [seed] [agentDurations]
+ *        [requestDurations] [requestNodeCounts] [timeSteps] [maxEntries] [maxAges] [evictions] [walks]
+ *        [radioRanges]
+ * where the durations, counts, limits, evictions, walks and radio ranges are
+ * comma separated lists, for example 30,50,70, lru,worst-distance or uniform,avoid-recent:4.
+ * A limit of 0 means none.
+ *
+ * @since 2023-05-25
+ */
+public class ReplicaSweep {
+    private static final double[] PERCENTILES = {5, 50, 95};
+    private static final String[] METRICS = {"events", "sentRequests", "foundEvents", "foundRatio",
+            "routesPerNode", "evictedRoutes", "expiredRoutes", "hopsToFind"};
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path inputFile = Path.of(args[0]);
+        int replicas = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : new SplittableRandom().nextLong();
+        int[] agentDurations = args.length > 4 ? parseList(args[4]) : new int[]{Environment.DEFAULT_AGENT_DURATION};
+        int[] requestDurations = args.length > 5 ? parseList(args[5]) : new int[]{Environment.DEFAULT_REQUEST_DURATION};
+        int[] requestNodeCounts = args.length > 6 ? parseList(args[6]) : new int[]{Environment.DEFAULT_REQUEST_NODES};
+        int timeSteps = args.length > 7 ? Integer.parseInt(args[7]) : 10000;
+        int[] maxEntries = args.length > 8 ? parseList(args[8]) : new int[]{0};
+        int[] maxAges = args.length > 9 ? parseList(args[9]) : new int[]{0};
+        String[] evictionNames = args.length > 10 ? args[10].split(",") : new String[]{"lru"};
+        String[] walkNames = args.length > 11 ? args[11].split(",") : new String[]{"uniform"};
+        int[] radioRanges = args.length > 12 ? parseList(args[12]) : new int[]{Environment.DEFAULT_RADIO_RANGE};
+        List<RetentionPolicy> retentions = new ArrayList<>();
+        for (int entries : maxEntries) {
+            for (int age : maxAges) {
+                for (String eviction : evictionNames) {
+                    retentions.add(new RetentionPolicy(entries, age, RetentionPolicy.Eviction.parse(eviction)));
+                }
+            }
+        }
+        List<WalkStrategy> walks = new ArrayList<>();
+        for (String walk : walkNames) {
+            walks.add(WalkStrategy.parse(walk));
+        }
+        if (replicas < 1 || threads < 1) {
+            throw new IllegalArgumentException("Replicas and threads must be positive: " + replicas + ", " + threads);
+        }
+
+        long[] seeds = new long[replicas];
+        SplittableRandom seedRandom = new SplittableRandom(seed);
+        for (int r = 0; r < replicas; r++) {
+            seeds[r] = seedRandom.nextLong();
+        }
+
+        System.out.println("# seed=" + seed + " replicas=" + replicas + " timeSteps=" + timeSteps);
+        System.out.println("radioRange,agentDuration,requestDuration,requestNodes,maxEntries,maxAge,eviction,walk,"
+                + "metric,mean,stddev,p5,p50,p95");
+        List<String> points = new ArrayList<>();
+        List<Integer> pointNodes = new ArrayList<>();
+        List<List<Future<long[]>>> pointRuns = new ArrayList<>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int radioRange : radioRanges) {
+                Topology topology = TopologyFiles.read(inputFile, radioRange);
+                for (int agentDuration : agentDurations) {
+                    for (int requestDuration : requestDurations) {
+                        for (int requestNodes : requestNodeCounts) {
+                            for (RetentionPolicy retention : retentions) {
+                                for (WalkStrategy walk : walks) {
+                                    List<Future<long[]>> runs = new ArrayList<>(replicas);
+                                    for (int r = 0; r < replicas; r++) {
+                                        long replicaSeed = seeds[r];
+                                        runs.add(executor.submit(() -> runReplica(topology, replicaSeed,
+                                                agentDuration, requestDuration, requestNodes, retention, walk,
+                                                timeSteps)));
+                                    }
+                                    points.add(radioRange + "," + agentDuration + "," + requestDuration + ","
+                                            + requestNodes + "," + retention + "," + walk);
+                                    pointNodes.add(topology.size());
+                                    pointRuns.add(runs);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            for (int p = 0; p < points.size(); p++) {
+                printStatistics(points.get(p), collect(pointRuns.get(p), pointNodes.get(p)));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Runs one replica.
+     *
+     * @return The number of events, sent requests, found events, routes at
+     * the end, evicted routes, expired routes, returned requests and their hops to find.
+     */
+    private static long[] runReplica(Topology topology, long seed, int agentDuration, int requestDuration,
+                                     int requestNodes, RetentionPolicy retention, WalkStrategy walk,
+                                     int timeSteps) {
+        Environment environment = new Environment(topology, seed, agentDuration, requestDuration, requestNodes);
+        environment.setResultSink(ResultSink.NONE);
+        environment.setRetention(retention);
+        environment.setWalkStrategy(walk);
+        environment.simulate(timeSteps);
+        return new long[]{environment.getNumberOfEvents(), environment.getNumberOfSentRequests(),
+                environment.getNumberOfFoundEvents(), environment.getNumberOfRoutingEntries(),
+                environment.getNumberOfEvictedEntries(), environment.getNumberOfExpiredEntries(),
+                environment.getRequestRegistry().getReturnedRequests(),
+                environment.getRequestRegistry().getHopsToFind()};
+    }
+
+    /**
+     * Waits for the replicas of one combination, the results come out as
+     * one array per metric in the order of the replicas.
+     */
+    private static double[][] collect(List<Future<long[]>> runs, int nodes) throws InterruptedException {
+        double[][] metrics = new double[METRICS.length][runs.size()];
+        for (int r = 0; r < runs.size(); r++) {
+            long[] result;
+            try {
+                result = runs.get(r).get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Replica " + r + " failed", e.getCause());
+            }
+            metrics[0][r] = result[0];
+            metrics[1][r] = result[1];
+            metrics[2][r] = result[2];
+            metrics[3][r] = result[1] == 0 ? 0 : (double) result[2] / result[1];
+            metrics[4][r] = nodes == 0 ? 0 : (double) result[3] / nodes;
+            metrics[5][r] = result[4];
+            metrics[6][r] = result[5];
+            metrics[7][r] = result[6] == 0 ? 0 : (double) result[7] / result[6];
+        }
+        return metrics;
+    }
+
+    private static void printStatistics(String point, double[][] metrics) {
+        for (int m = 0; m < METRICS.length; m++) {
+            double[] values = metrics[m];
+            double mean = 0;
+            for (double value : values) {
+                mean += value;
+            }
+            mean /= values.length;
+            double squares = 0;
+            for (double value : values) {
+                squares += (value - mean) * (value - mean);
+            }
+            double stddev = values.length > 1 ? Math.sqrt(squares / (values.length - 1)) : 0;
+
+            Arrays.sort(values);
+            StringBuilder line = new StringBuilder(point).append(',').append(METRICS[m])
+                    .append(',').append(format(mean)).append(',').append(format(stddev));
+            for (double percentile : PERCENTILES) {
+                line.append(',').append(format(percentile(values, percentile)));
+            }
+            System.out.println(line);
+        }
+    }
+
+    /**
+     * Gets a percentile of sorted values, interpolating linearly between the
+     * two closest values.
+     */
+    private static double percentile(double[] sorted, double percentile) {
+        double position = percentile / 100 * (sorted.length - 1);
+        int lower = (int) Math.floor(position);
+        int upper = Math.min(sorted.length - 1, lower + 1);
+        return sorted[lower] + (position - lower) * (sorted[upper] - sorted[lower]);
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.4f", value);
+    }
+
+    private static int[] parseList(String list) {
+        String[] parts = list.split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+}
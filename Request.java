@@ -1,11 +1,12 @@
-import java.util.ArrayList;
-import java.util.Random;
-import java.util.Stack;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * The Request class tries to find specific events. It takes random routes in
  * the environment and tries to find the event or the path to the event. When
- * found it goes back the sam route it took to find the event and then prints it.
+ * found it goes back the sam route it took to find the event and then reports it.
  *
  * @since 2023-05-25
  */
@@ -15,17 +16,43 @@ public class Request extends Message {
      */
     private Node sourceNode;
     /**
-     * The route the request has taken until it finds the event or path to event it's looking for.
+     * The route the request has taken until it finds the event or path to
+     * event it's looking for, as a stack of node indices.
      */
-    private Stack<Node> route = new Stack<>();
+    private int[] route = new int[16];
+    private int routeSize;
+    /*Room for the neighbours the walk strategy chooses from*/
+    private int[] candidates = new int[0];
     /**
-     * The life length of the agent.
+     * The time step the request was registered in.
      */
     private int timeRequestSent;
+    /**
+     * The hops the request made from its source node until it found the event.
+     */
+    private int hopsToFind;
     private boolean sentTwice;
     private boolean requestReturned;
     private boolean foundRequestEvent;
-    private String msg;
+    private FoundEvent result;
+    private RequestRegistry registry;
+    private int id;
+
+    /**
+     * How many of the registry and the queue still hold on to a finished
+     * request, it goes back to the pool when both have let go.
+     */
+    private int releaseHolds;
+
+    /**
+     * The kinds of moves a request makes.
+     */
+    private enum Move { FORWARD, RANDOM, BACKWARD }
+
+    /**
+     * The move chosen by the last call to selectTarget.
+     */
+    private Move plannedMove;
 
     /**
      * This is the constructor for request. To be able to create a request it
@@ -39,20 +66,120 @@ public class Request extends Message {
     public Request(Node startNode, int lifeLength, int requestedEvent) {
         super(startNode, lifeLength, requestedEvent);
 
-        route.push(currentNode);
+        pushRoute(currentNode);
         sourceNode = currentNode;
         requestReturned = false;
     }
 
+    /**
+     * Sets the request up to start over from the given node, keeping the
+     * memory of its route so a pooled request allocates nothing.
+     *
+     * @param startNode   The start node.
+     * @param lifeLength Life length for request.
+     * @param requestedEvent The event that is searched for.
+     */
+    @Override
+    public void reset(Node startNode, int lifeLength, int requestedEvent) {
+        super.reset(startNode, lifeLength, requestedEvent);
+        routeSize = 0;
+        pushRoute(currentNode);
+        sourceNode = currentNode;
+        hopsToFind = 0;
+        sentTwice = false;
+        requestReturned = false;
+        foundRequestEvent = false;
+        result = null;
+        registry = null;
+        plannedMove = null;
+        releaseHolds = 0;
+    }
+
 
     /**
-     * This is the method that makes request move. It starts to check if requests
+     * Restores a request saved by writeState.
+     *
+     * @param input Where the request is read from.
+     * @param environment The environment the request is in.
+     * @param registry The registry the request reports to, if it was attached to one.
+     * @return The request.
+     * @throws IOException If reading fails.
+     */
+    public static Request restore(DataInput input, Environment environment, RequestRegistry registry)
+            throws IOException {
+        Request request = new Request(environment.getNode(0), 0, 0);
+        request.readState(input, environment);
+        if (input.readBoolean()) {
+            request.registry = registry;
+        }
+        return request;
+    }
+
+    @Override
+    protected void writeState(DataOutput output) throws IOException {
+        super.writeState(output);
+        output.writeInt(sourceNode.getIndex());
+        output.writeInt(routeSize);
+        for (int i = 0; i < routeSize; i++) {
+            output.writeInt(route[i]);
+        }
+        output.writeInt(timeRequestSent);
+        output.writeInt(hopsToFind);
+        output.writeBoolean(sentTwice);
+        output.writeBoolean(requestReturned);
+        output.writeBoolean(foundRequestEvent);
+        output.writeBoolean(result != null);
+        if (result != null) {
+            output.writeInt(result.getRequestId());
+            output.writeInt(result.getEventID());
+            output.writeInt(result.getX());
+            output.writeInt(result.getY());
+            output.writeInt(result.getCreatedTime());
+        }
+        output.writeInt(id);
+        output.writeInt(releaseHolds);
+        output.writeInt(plannedMove == null ? -1 : plannedMove.ordinal());
+        output.writeBoolean(registry != null);
+    }
+
+    /**
+     * Restores everything but the registry, restore connects the registry.
+     */
+    @Override
+    protected void readState(DataInput input, Environment environment) throws IOException {
+        super.readState(input, environment);
+        sourceNode = environment.getNode(input.readInt());
+        routeSize = input.readInt();
+        route = new int[Math.max(16, routeSize)];
+        for (int i = 0; i < routeSize; i++) {
+            route[i] = input.readInt();
+        }
+        timeRequestSent = input.readInt();
+        hopsToFind = input.readInt();
+        sentTwice = input.readBoolean();
+        requestReturned = input.readBoolean();
+        foundRequestEvent = input.readBoolean();
+        result = input.readBoolean()
+                ? new FoundEvent(input.readInt(), input.readInt(), input.readInt(), input.readInt(), input.readInt())
+                : null;
+        id = input.readInt();
+        releaseHolds = input.readInt();
+        int move = input.readInt();
+        if (move < -1 || move >= Move.values().length) {
+            throw new IOException("Unknown move: " + move);
+        }
+        plannedMove = move < 0 ? null : Move.values()[move];
+        registry = null;
+    }
+
+    /**
+     * This is the method that chooses where request moves. It starts to check if requests
      * life length has run out, if it has the method stops running. Otherwise, the
      * method checks the node it's on to see if it has the path to the event it's
      * looking for or the actual event. If it has either of them, request moves
      * towards that event until it finds where it happened. Then it takes the
      * same route it took to find the event but backwards until it reaches the
-     * starting point of the request adn prints information about the event.
+     * starting point of the request adn reports the event to the registry.
      *
      * If request doesn't find the event it's looking for on its current event
      * it will go to a random neighbour.
@@ -62,42 +189,84 @@ public class Request extends Message {
      * will give up. But the second try doesn't happen from this function, it
      * will happen from the main function.
      *
+     * @return The node the request moves to, or null if it can't move now.
      */
-    public boolean send() {
-        Routing routingEntry = currentNode.getRoutingTable().get(eventID);
+    @Override
+    public Node selectTarget() {
+        RoutingTable routingTable = currentNode.getRoutingTable();
+        int routingSlot = routingTable.slotOf(eventID);
+        boolean hasRoute = routingSlot != RoutingTable.NO_SLOT;
+        Node nextNode = hasRoute
+                ? currentNode.getEnvironment().getNode(routingTable.nextNodeAt(routingSlot)) : null;
+        if (hasRoute) {
+            /*Only the message at the front of the queue reads this table while targets are chosen*/
+            routingTable.touch(routingSlot, currentNode.getEnvironment().getTime());
+        }
 
+        claimsTarget = true;
         if (requestReturned) {
             this.durationTime = 0;
-            return false;
+            return null;
         } else if (!foundRequestEvent) {
-            if (routingEntry != null && routingEntry.getDistance() == 0 && currentNode.isContainsEvent(eventID)) {
-                msg = this.toString();
+            if (hasRoute && routingTable.distanceAt(routingSlot) == 0 && currentNode.isContainsEvent(eventID)) {
+                result = foundEvent();
+                hopsToFind = routeSize - 1;
                 foundRequestEvent = true;
-                if (!route.peek().getBusyStatus()) {
-                    moveBackwards();
-                    return true;
+                RequestEvent.emit(RequestEvent.FOUND, id, eventID, currentNode);
+                Node previousNode = peekRoute();
+                if (!previousNode.getBusyStatus()) {
+                    plannedMove = Move.BACKWARD;
+                    return previousNode;
                 }
-            } else if (routingEntry != null && !routingEntry.getNextNode().getBusyStatus()) {
-                route.push(currentNode);
-                routingEntry.getNextNode().insertMessage(this);
-                currentNode = routingEntry.getNextNode();
-                return true;
+            } else if (hasRoute && !nextNode.getBusyStatus()) {
+                plannedMove = Move.FORWARD;
+                return nextNode;
             } else {
-                ArrayList<Node> availableNeighbour = currentNode.getNeighbours();
-                if (!availableNeighbour.isEmpty()) {
-
-                    route.push(currentNode);
-                    currentNode = availableNeighbour.get(new Random().nextInt(availableNeighbour.size()));
-                    currentNode.insertMessage(this);
-                    decreaseDurationTime();
-                    return true;
+                Environment environment = currentNode.getEnvironment();
+                Topology topology = environment.getTopology();
+                if (candidates.length < topology.getMaxDegree()) {
+                    candidates = new int[topology.getMaxDegree()];
+                }
+                int neighbour = environment.getWalkStrategy().chooseNeighbour(topology, currentNode.getIndex(),
+                        route, routeSize, currentNode.getRandom(), candidates);
+                if (neighbour >= 0) {
+                    /*A random step doesn't wait for the neighbour to be free*/
+                    claimsTarget = false;
+                    plannedMove = Move.RANDOM;
+                    return environment.getNode(neighbour);
                 }
             }
-        } else if(!route.peek().getBusyStatus()) {
-            moveBackwards();
-            return true;
+        } else if(!peekRoute().getBusyStatus()) {
+            plannedMove = Move.BACKWARD;
+            return peekRoute();
+        }
+        return null;
+    }
+
+    /**
+     * Moves the request to the node chosen by selectTarget, either towards the
+     * event, to a random neighbour or backwards along the route.
+     *
+     * @param target The node chosen by selectTarget.
+     */
+    @Override
+    public void moveTo(Node target) {
+        switch (plannedMove) {
+            case FORWARD:
+                pushRoute(currentNode);
+                target.insertMessage(this);
+                currentNode = target;
+                break;
+            case RANDOM:
+                pushRoute(currentNode);
+                currentNode = target;
+                currentNode.insertMessage(this);
+                decreaseDurationTime();
+                break;
+            case BACKWARD:
+                moveBackwards();
+                break;
         }
-        return false;
     }
 
     /**
@@ -106,16 +275,37 @@ public class Request extends Message {
      * but backwards until it from where request.
      */
     public void moveBackwards() {
-        if (!route.isEmpty()) {
-            Node previousNode = route.pop();
+        if (routeSize > 0) {
+            Node previousNode = peekRoute();
+            routeSize--;
             previousNode.insertMessage(this);
             currentNode = previousNode;
         }
 
-        if (route.isEmpty()) {
+        if (routeSize == 0) {
             requestReturned = true;
-            System.out.println(msg);
+            releaseHolds = 2;
+            RequestEvent.emit(RequestEvent.RETURNED, id, eventID, currentNode);
+            if (Metrics.ENABLED) {
+                Environment environment = currentNode.getEnvironment();
+                environment.getMetrics().requestHopsToFind.record(hopsToFind);
+                environment.getMetrics().requestRoundTrip.record(environment.getTime() - timeRequestSent);
+            }
+            if (registry != null) {
+                registry.reportReturned(this);
+            }
+        }
+    }
+
+    private void pushRoute(Node node) {
+        if (routeSize == route.length) {
+            route = Arrays.copyOf(route, routeSize * 2);
         }
+        route[routeSize++] = node.getIndex();
+    }
+
+    private Node peekRoute() {
+        return currentNode.getEnvironment().getNode(route[routeSize - 1]);
     }
 
     /**
@@ -126,8 +316,94 @@ public class Request extends Message {
     public void resendingRequest(int requestDuration) {
         currentNode = sourceNode;
         durationTime = requestDuration;
-        currentNode.insertMessage(this);
         sentTwice = true;
+        RequestEvent.emit(RequestEvent.RESENT, id, eventID, currentNode);
+        /*With actors the request may move on as soon as it is queued*/
+        currentNode.getEnvironment().queueMessage(currentNode, this);
+    }
+
+    /**
+     * Called when the request is dropped from a queue because its duration
+     * ran out. Unless it has returned, the registry is told it timed out.
+     * A returned request is let go by the queue.
+     */
+    @Override
+    public void expire() {
+        if (requestReturned) {
+            releaseHold();
+        } else if (registry != null) {
+            releaseHolds = 1;
+            registry.reportTimedOut(this);
+        }
+    }
+
+    /**
+     * Lets go of a finished request, called by the queue that dropped it and
+     * by the registry. When nothing holds on to it any more it goes back to
+     * the pool of the environment. With actors the two can let go at the
+     * same time, from different threads.
+     */
+    public synchronized void releaseHold() {
+        if (--releaseHolds == 0) {
+            sourceNode.getEnvironment().releaseRequest(this);
+        }
+    }
+
+    /**
+     * Connects the request to the registry that keeps track of it.
+     *
+     * @param registry The registry the request reports to.
+     * @param id The number of the request, in the order requests are registered.
+     */
+    public void attach(RequestRegistry registry, int id) {
+        this.registry = registry;
+        this.id = id;
+        this.timeRequestSent = currentNode.getEnvironment().getTime();
+    }
+
+    /**
+     * Gets the time step the request was registered in.
+     *
+     * @return The time step.
+     */
+    public int getTimeRequestSent() {
+        return timeRequestSent;
+    }
+
+    /**
+     * Gets the hops the request made from its source node until it found the event.
+     *
+     * @return The hops, 0 until the event is found.
+     */
+    public int getHopsToFind() {
+        return hopsToFind;
+    }
+
+    /**
+     * Gets the node the request was sent from.
+     *
+     * @return The source node.
+     */
+    public Node getSourceNode() {
+        return sourceNode;
+    }
+
+    /**
+     * Gets the number the request got when it was registered.
+     *
+     * @return The id of the request.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the event the request found, set when it reaches the node of the event.
+     *
+     * @return The found event, or null if the request hasn't found it.
+     */
+    public FoundEvent getResult() {
+        return result;
     }
 
     /**
@@ -148,15 +424,22 @@ public class Request extends Message {
         return sentTwice;
     }
 
+    /**
+     * Saves the info about the found event at the current node. The position
+     * and timeStep and id number of the event.
+     */
+    private FoundEvent foundEvent() {
+        Event event = currentNode.getEvent(eventID);
+        return new FoundEvent(id, event.getEventID(),
+                currentNode.getPosition().getX(), currentNode.getPosition().getY(), event.getTimeStep());
+    }
+
     /**
      * This method prints the saved info about the found event. The position
      * and timeStep and id number of the event.
      */
     @Override
     public String toString(){
-        Event event = currentNode.getEvent(eventID);
-        return "Event ID: " + event.getEventID() +
-                " At Position: " + currentNode.getPosition().getX() + ", " + currentNode.getPosition().getY() +
-                " Created Time: " + event.getTimeStep();
+        return result != null ? result.toString() : "Request for event " + eventID;
     }
 }
@@ -0,0 +1,82 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The RequestEvent class is a Java Flight Recorder event for a step in the
+ * life of a request: injected, found, resent, returned or dropped. The
+ * fields are only filled in when the event is recorded.
+ *
+ * @since 2023-05-25
+ */
+@Name("rumor.Request")
+@Label("Request")
+@Category("Rumor Routing")
+@Description("A step in the life of a request")
+@StackTrace(false)
+public class RequestEvent extends Event {
+    /**
+     * The request was sent from its request node.
+     */
+    public static final String INJECTED = "injected";
+
+    /**
+     * The request reached the node of the event.
+     */
+    public static final String FOUND = "found";
+
+    /**
+     * The request timed out the first time and was sent again.
+     */
+    public static final String RESENT = "resent";
+
+    /**
+     * The request came back to its source node with the event.
+     */
+    public static final String RETURNED = "returned";
+
+    /**
+     * The request timed out the second time and was given up.
+     */
+    public static final String DROPPED = "dropped";
+
+    @Label("Stage")
+    private String stage;
+
+    @Label("Request Id")
+    private int requestId;
+
+    @Label("Event Id")
+    @Description("The id of the event the request looks for")
+    private int eventId;
+
+    @Label("Time Step")
+    private int timeStep;
+
+    @Label("Node")
+    @Description("The index of the node the request is at")
+    private int node;
+
+    /**
+     * Records a step in the life of a request, if the event is enabled.
+     *
+     * @param stage The step, one of the constants of this class.
+     * @param requestId The id of the request.
+     * @param eventId The id of the event the request looks for.
+     * @param node The node the request is at.
+     */
+    public static void emit(String stage, int requestId, int eventId, Node node) {
+        RequestEvent event = new RequestEvent();
+        if (event.isEnabled()) {
+            event.stage = stage;
+            event.requestId = requestId;
+            event.eventId = eventId;
+            event.timeStep = node.getEnvironment().getTime();
+            event.node = node.getIndex();
+            event.commit();
+        }
+    }
+}
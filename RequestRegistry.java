@@ -0,0 +1,342 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The RequestRegistry class keeps track of the requests that have been sent
+ * and not finished yet. Instead of checking every request each time step, a
+ * request reports itself when it returns with the event or runs out of
+ * duration, and only those reports are handled.
+ *
+ * Requests can report from several threads at the same time when the
+ * parallel engine is used, so reports are collected under a lock and handled
+ * in the order the requests were registered. The events found by returned
+ * requests are handed to the result sink in that order as well.
+ *
+ * With a location cache a request can be answered without being sent, from
+ * the cache or by joining a search for the same event. It still gets a
+ * number, and its answer goes to the sink with the others of the time step.
+ *
+ * @since 2023-05-25
+ */
+public class RequestRegistry {
+    private static final Comparator<Request> BY_ID = Comparator.comparingInt(Request::getId);
+    private static final Comparator<FoundEvent> BY_REQUEST = Comparator.comparingInt(FoundEvent::getRequestId);
+
+    private final ArrayList<Request> returned = new ArrayList<>();
+    private final ArrayList<Request> timedOut = new ArrayList<>();
+    private final ArrayList<Request> batch = new ArrayList<>();
+    /*The answers of the time step, only used with a location cache*/
+    private final ArrayList<FoundEvent> answers = new ArrayList<>();
+    private LocationCache locationCache;
+    private ResultSink resultSink = ResultSink.PRINT;
+    private int outstanding;
+    private int nextId;
+    private long returnedRequests;
+    private long hopsToFind;
+
+    /**
+     * Sets where the events found by returned requests go.
+     *
+     * @param resultSink The sink for the found events.
+     */
+    public void setResultSink(ResultSink resultSink) {
+        if (resultSink == null) {
+            throw new IllegalArgumentException("Result sink must not be null");
+        }
+        this.resultSink = resultSink;
+    }
+
+    /**
+     * Sets the cache that answers requests without sending them.
+     *
+     * @param locationCache The cache, or null to send every request.
+     */
+    public void setLocationCache(LocationCache locationCache) {
+        this.locationCache = locationCache;
+    }
+
+    /**
+     * Gets the cache that answers requests without sending them.
+     *
+     * @return The cache, or null if every request is sent.
+     */
+    public LocationCache getLocationCache() {
+        return locationCache;
+    }
+
+    /**
+     * Adds a request that has just been sent.
+     *
+     * @param request The request.
+     */
+    public void register(Request request) {
+        request.attach(this, nextId++);
+        outstanding++;
+        if (locationCache != null) {
+            locationCache.searching(request);
+        }
+    }
+
+    /**
+     * Tries to answer a request from a source node without sending it, from
+     * the location cache or by joining a search for the same event. A
+     * request answered either way uses up the next number.
+     *
+     * @param source The source node.
+     * @param eventID The event the request is for.
+     * @param time The current time step.
+     * @return True if the request doesn't need to be sent.
+     */
+    public boolean answer(Node source, int eventID, int time) {
+        if (locationCache == null) {
+            return false;
+        }
+        FoundEvent answer = locationCache.answer(source.getIndex(), eventID, nextId, time);
+        if (answer == null) {
+            return false;
+        }
+        nextId++;
+        if (answer == LocationCache.JOINED) {
+            outstanding++;
+        } else {
+            answers.add(answer);
+        }
+        return true;
+    }
+
+    /**
+     * Uses up the next number without registering a request, for a request
+     * another process of a partitioned simulation registers.
+     */
+    public void skipId() {
+        nextId++;
+    }
+
+    /**
+     * Called by a request that has come back to its source node with the event.
+     *
+     * @param request The request.
+     */
+    public synchronized void reportReturned(Request request) {
+        returned.add(request);
+    }
+
+    /**
+     * Called by a request that has run out of duration without finding the event.
+     *
+     * @param request The request.
+     */
+    public synchronized void reportTimedOut(Request request) {
+        timedOut.add(request);
+    }
+
+    /**
+     * Handles the reports since the last call. Returned requests are finished
+     * and their found events passed to the result sink,
+     * requests that timed out the first time are sent again and requests that
+     * timed out twice are given up.
+     *
+     * With a location cache the returned requests are remembered in the
+     * cache, and the requests that joined a search finish with it.
+     *
+     * @param requestDuration The duration of a request that is sent again.
+     * @param time The current time step.
+     * @return The number of sent requests that returned with the event. The
+     * requests answered from the cache or by joining a search weren't sent,
+     * their answers go to the result sink but aren't counted.
+     */
+    public int processReports(int requestDuration, int time) {
+        int found = drain(returned);
+        outstanding -= found;
+        for (int i = 0; i < batch.size(); i++) {
+            Request request = batch.get(i);
+            returnedRequests++;
+            hopsToFind += request.getHopsToFind();
+            if (locationCache == null) {
+                resultSink.accept(request.getResult());
+            } else {
+                answers.add(request.getResult());
+                outstanding -= locationCache.returned(request, time, answers);
+            }
+            request.releaseHold();
+        }
+        batch.clear();
+        if (!answers.isEmpty()) {
+            /*The returned requests, the ones that joined them and the ones answered from the cache*/
+            answers.sort(BY_REQUEST);
+            for (int i = 0; i < answers.size(); i++) {
+                resultSink.accept(answers.get(i));
+            }
+            answers.clear();
+        }
+
+        drain(timedOut);
+        for (int i = 0; i < batch.size(); i++) {
+            Request request = batch.get(i);
+            if (request.isSentTwice()) {
+                RequestEvent.emit(RequestEvent.DROPPED, request.getId(), request.getEventID(), request.getCurrentNode());
+                outstanding--;
+                if (locationCache != null) {
+                    outstanding -= locationCache.dropped(request);
+                }
+                request.releaseHold();
+            } else {
+                request.resendingRequest(requestDuration);
+            }
+        }
+        batch.clear();
+        return found;
+    }
+
+    /**
+     * Removes the requests that timed out here but were sent from a node of
+     * another region, so they can be reported to the registry of that region.
+     *
+     * @param partition The regions of the nodes.
+     * @param region The region of this registry.
+     * @param requests Where the removed requests are added, in the order they timed out.
+     */
+    public synchronized void takeTimedOutElsewhere(Partition partition, int region, List<Request> requests) {
+        int kept = 0;
+        for (int i = 0; i < timedOut.size(); i++) {
+            Request request = timedOut.get(i);
+            if (partition.regionOf(request.getSourceNode().getIndex()) == region) {
+                timedOut.set(kept++, request);
+            } else {
+                requests.add(request);
+            }
+        }
+        timedOut.subList(kept, timedOut.size()).clear();
+    }
+
+    /**
+     * Checks if there are reports waiting to be handled.
+     *
+     * @return True if a request has returned, timed out or been answered
+     * without being sent since the last call to processReports.
+     */
+    public synchronized boolean hasReports() {
+        return !returned.isEmpty() || !timedOut.isEmpty() || !answers.isEmpty();
+    }
+
+    /**
+     * Gets the number of requests that have been sent and aren't finished.
+     *
+     * @return The number of outstanding requests.
+     */
+    public int getOutstanding() {
+        return outstanding;
+    }
+
+    /**
+     * Gets the number of requests that have returned with their event, not
+     * counting the ones answered from a location cache.
+     *
+     * @return The number of returned requests.
+     */
+    public long getReturnedRequests() {
+        return returnedRequests;
+    }
+
+    /**
+     * Gets the hops the returned requests made from their source node until
+     * they found their event, added up.
+     *
+     * @return The hops to find of all returned requests.
+     */
+    public long getHopsToFind() {
+        return hopsToFind;
+    }
+
+    /**
+     * Gives the requests that have reported and have no number yet the next
+     * number, so a checkpoint can refer to them by number.
+     *
+     * @param numbers The numbers of the messages, in the order they were given.
+     */
+    public synchronized void numberMessages(Map<Message, Integer> numbers) {
+        for (Request request : returned) {
+            numbers.putIfAbsent(request, numbers.size());
+        }
+        for (Request request : timedOut) {
+            numbers.putIfAbsent(request, numbers.size());
+        }
+    }
+
+    /**
+     * Saves the registry for a checkpoint, the reported requests by their
+     * numbers, and the location cache.
+     *
+     * @param output Where the registry is written.
+     * @param numbers The numbers of the messages.
+     * @throws IOException If writing fails.
+     */
+    public synchronized void writeState(DataOutput output, Map<Message, Integer> numbers) throws IOException {
+        output.writeInt(outstanding);
+        output.writeInt(nextId);
+        output.writeLong(returnedRequests);
+        output.writeLong(hopsToFind);
+        writeRequests(output, returned, numbers);
+        writeRequests(output, timedOut, numbers);
+        /*Answers are handed on in the time step they are made, between time steps there are none*/
+        output.writeBoolean(locationCache != null);
+        if (locationCache != null) {
+            locationCache.writeState(output);
+        }
+    }
+
+    /**
+     * Restores the registry saved by writeState.
+     *
+     * @param input Where the registry is read from.
+     * @param messages The messages of the checkpoint, indexed by number.
+     * @throws IOException If reading fails.
+     */
+    public synchronized void readState(DataInput input, Message[] messages) throws IOException {
+        outstanding = input.readInt();
+        nextId = input.readInt();
+        returnedRequests = input.readLong();
+        hopsToFind = input.readLong();
+        readRequests(input, returned, messages);
+        readRequests(input, timedOut, messages);
+        locationCache = input.readBoolean() ? LocationCache.readState(input) : null;
+    }
+
+    private static void writeRequests(DataOutput output, ArrayList<Request> requests,
+                                      Map<Message, Integer> numbers) throws IOException {
+        output.writeInt(requests.size());
+        for (Request request : requests) {
+            output.writeInt(numbers.get(request));
+        }
+    }
+
+    private static void readRequests(DataInput input, ArrayList<Request> requests,
+                                     Message[] messages) throws IOException {
+        requests.clear();
+        int count = input.readInt();
+        for (int i = 0; i < count; i++) {
+            Message message = messages[input.readInt()];
+            if (!(message instanceof Request)) {
+                throw new IOException("Reported message is not a request");
+            }
+            requests.add((Request) message);
+        }
+    }
+
+    /**
+     * Moves the reports into the batch, sorted by the order the requests were registered.
+     */
+    private int drain(ArrayList<Request> reports) {
+        synchronized (this) {
+            batch.addAll(reports);
+            reports.clear();
+        }
+        batch.sort(BY_ID);
+        return batch.size();
+    }
+}
@@ -0,0 +1,31 @@
+/**
+ * The ResultSink interface receives the events found by requests. The
+ * environment hands the results over once per time step, in the order the
+ * requests were sent, from the thread that runs the simulation.
+ *
+ * @since 2023-05-25
+ */
+public interface ResultSink {
+    /**
+     * Prints every result on standard output as soon as it is found.
+     */
+    ResultSink PRINT = System.out::println;
+
+    /**
+     * Throws the results away, for benchmarks.
+     */
+    ResultSink NONE = result -> { };
+
+    /**
+     * Receives an event found by a request.
+     *
+     * @param result The found event.
+     */
+    void accept(FoundEvent result);
+
+    /**
+     * Called when no more results will come, writes out what is left.
+     */
+    default void close() {
+    }
+}
@@ -0,0 +1,181 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * The RetentionPolicy class decides how much routing information the nodes
+ * keep. Without limits every node ends up with a route to almost every event
+ * that ever happened, so memory and the cost of merging tables grow for as
+ * long as the simulation runs.
+ *
+ * A policy can limit the number of routes per node and let events expire at
+ * a given age. A node whose routing table has grown an eighth past the limit
+ * evicts routes until it is at the limit again, so eviction happens in
+ * batches instead of on every new route. Expired events are removed from all
+ * tables every eighth of the maximum age, and aren't spread by agents or
+ * asked for by requests in between.
+ *
+ * Agents carry at most as many routes as a node and always evict the routes
+ * with the longest distance, since nothing uses the routes of an agent
+ * except to pass them on.
+ *
+ * @since 2023-05-25
+ */
+public class RetentionPolicy {
+    /**
+     * Which routes a node evicts when its routing table is over the limit.
+     */
+    public enum Eviction {
+        /**
+         * The routes that were learnt, improved or followed by a request the
+         * longest time ago. The routes to the node's own events go last.
+         */
+        LRU,
+
+        /**
+         * The routes with the longest distance to their event, of equal
+         * distances the route to the oldest event.
+         */
+        WORST_DISTANCE;
+
+        /**
+         * Parses the name of an eviction, for example lru or worst-distance.
+         *
+         * @param name The name, in any case, with - or _ between words.
+         * @return The eviction.
+         */
+        public static Eviction parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown eviction: " + name, e);
+            }
+        }
+    }
+
+    /**
+     * The policy that keeps everything, the default.
+     */
+    public static final RetentionPolicy UNBOUNDED = new RetentionPolicy(0, 0, Eviction.WORST_DISTANCE);
+
+    private final int maxEntries;
+    private final int maxAge;
+    private final Eviction eviction;
+
+    /**
+     * Constructs a policy.
+     *
+     * @param maxEntries The largest number of routes a node keeps, 0 for no limit.
+     * @param maxAge The number of time steps after which an event expires, 0 for never.
+     * @param eviction Which routes are evicted when a node has too many.
+     */
+    public RetentionPolicy(int maxEntries, int maxAge, Eviction eviction) {
+        if (maxEntries < 0 || maxAge < 0) {
+            throw new IllegalArgumentException("Limits must not be negative: " + maxEntries + ", " + maxAge);
+        }
+        if (eviction == null) {
+            throw new IllegalArgumentException("Eviction must not be null");
+        }
+        this.maxEntries = maxEntries;
+        this.maxAge = maxAge;
+        this.eviction = eviction;
+    }
+
+    /**
+     * Gets the largest number of routes a node keeps.
+     *
+     * @return The number of routes, 0 for no limit.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Gets the number of time steps after which an event expires.
+     *
+     * @return The age, 0 if events never expire.
+     */
+    public int getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * Gets which routes are evicted when a node has too many.
+     *
+     * @return The eviction.
+     */
+    public Eviction getEviction() {
+        return eviction;
+    }
+
+    /**
+     * Gets the size a routing table may grow to before routes are evicted.
+     *
+     * @return The size, Integer.MAX_VALUE if there is no limit.
+     */
+    public int getEvictionSize() {
+        return maxEntries == 0 ? Integer.MAX_VALUE : maxEntries + Math.max(1, maxEntries / 8);
+    }
+
+    /**
+     * Gets the number of time steps between removing expired events.
+     *
+     * @return The number of time steps, Integer.MAX_VALUE if events never expire.
+     */
+    public int getExpiryInterval() {
+        return maxAge == 0 ? Integer.MAX_VALUE : Math.max(1, maxAge / 8);
+    }
+
+    /**
+     * Checks if the nodes need to record when their routes are used.
+     *
+     * @return True if routes are evicted by when they were last used.
+     */
+    public boolean tracksUse() {
+        return maxEntries > 0 && eviction == Eviction.LRU;
+    }
+
+    /**
+     * Saves the policy for a checkpoint.
+     *
+     * @param output Where the policy is written.
+     * @throws IOException If writing fails.
+     */
+    public void writeState(DataOutput output) throws IOException {
+        output.writeInt(maxEntries);
+        output.writeInt(maxAge);
+        output.writeInt(eviction.ordinal());
+    }
+
+    /**
+     * Reads a policy saved by writeState.
+     *
+     * @param input Where the policy is read from.
+     * @return The policy.
+     * @throws IOException If reading fails or the policy is malformed.
+     */
+    public static RetentionPolicy readState(DataInput input) throws IOException {
+        int entries = input.readInt();
+        int age = input.readInt();
+        int ordinal = input.readInt();
+        if (ordinal < 0 || ordinal >= Eviction.values().length) {
+            throw new IOException("Unknown eviction: " + ordinal);
+        }
+        try {
+            return new RetentionPolicy(entries, age, Eviction.values()[ordinal]);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed retention policy: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gets the policy as maxEntries,maxAge,eviction, the way ReplicaSweep prints it.
+     *
+     * @return The policy.
+     */
+    @Override
+    public String toString() {
+        return maxEntries + "," + maxAge + "," + eviction.name().toLowerCase(Locale.ROOT).replace('_', '-');
+    }
+}
@@ -0,0 +1,145 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The RoutingTable interface is the routing information a node or an agent
+ * keeps about events. For every event ID it holds the distance to the event
+ * and the index of the next node on the route.
+ *
+ * Entries are reached through slots so tables can be walked and merged
+ * without boxing the event IDs or allocating entry objects.
+ *
+ * @since 2023-05-25
+ */
+public interface RoutingTable {
+
+    /**
+     * Slot returned when an event isn't in the table.
+     */
+    int NO_SLOT = -1;
+
+    /**
+     * Finds the slot that holds the given event.
+     *
+     * @param eventID The event to look for.
+     * @return The slot of the event, or NO_SLOT if the table has no route to it.
+     */
+    int slotOf(int eventID);
+
+    /**
+     * Adds a route to the event, or replaces the route if there already is one.
+     *
+     * @param eventID The event the route leads to.
+     * @param distance The distance to the event.
+     * @param nextNode The index of the next node on the route.
+     * @return The slot of the event, until the next entry is added.
+     */
+    int put(int eventID, int distance, int nextNode);
+
+    /**
+     * Replaces the route in a used slot, without looking the event up again.
+     *
+     * @param slot A used slot.
+     * @param distance The distance to the event.
+     * @param nextNode The index of the next node on the route.
+     */
+    void putAt(int slot, int distance, int nextNode);
+
+    /**
+     * Finds the next used slot, used to walk all entries:
+     * {@code for (int s = table.nextSlot(0); s != NO_SLOT; s = table.nextSlot(s + 1))}.
+     *
+     * @param fromSlot The slot to start looking at.
+     * @return The first used slot at or after fromSlot, or NO_SLOT if there is none.
+     */
+    int nextSlot(int fromSlot);
+
+    /**
+     * Gets the event ID stored in a used slot.
+     *
+     * @param slot A used slot.
+     * @return The event ID.
+     */
+    int eventAt(int slot);
+
+    /**
+     * Gets the distance stored in a used slot.
+     *
+     * @param slot A used slot.
+     * @return The distance to the event.
+     */
+    int distanceAt(int slot);
+
+    /**
+     * Gets the next node stored in a used slot.
+     *
+     * @param slot A used slot.
+     * @return The index of the next node on the route.
+     */
+    int nextNodeAt(int slot);
+
+    /**
+     * Starts or stops recording when entries are used, which least recently
+     * used eviction needs. Entries used before recording started count as
+     * used at time step 0.
+     *
+     * @param track True to record use.
+     */
+    void trackUse(boolean track);
+
+    /**
+     * Records that the entry in a used slot was used in the given time step.
+     * Does nothing unless the table records use.
+     *
+     * @param slot A used slot.
+     * @param time The time step.
+     */
+    void touch(int slot, int time);
+
+    /**
+     * Removes the entries of events with an ID below the given one. Events get
+     * their IDs in the order they happen, so these are the oldest events.
+     *
+     * @param eventID The first event ID to keep.
+     * @return The number of entries removed.
+     */
+    int expireBefore(int eventID);
+
+    /**
+     * Removes entries until at most the given number are left.
+     *
+     * @param maxEntries The number of entries to keep.
+     * @param eviction Which entries are removed first.
+     * @return The number of entries removed.
+     */
+    int evict(int maxEntries, RetentionPolicy.Eviction eviction);
+
+    /**
+     * Removes all entries, keeping the memory of the table for reuse.
+     */
+    void clear();
+
+    /**
+     * Gets the number of events in the table.
+     *
+     * @return The number of entries.
+     */
+    int size();
+
+    /**
+     * Saves the table, slot by slot, so it can be restored exactly.
+     *
+     * @param output Where the table is written.
+     * @throws IOException If writing fails.
+     */
+    void writeState(DataOutput output) throws IOException;
+
+    /**
+     * Replaces the table with one saved by writeState.
+     *
+     * @param input Where the table is read from.
+     * @throws IOException If reading fails.
+     */
+    void readState(DataInput input) throws IOException;
+}
@@ -0,0 +1,78 @@
+import java.util.HashMap;
+
+/**
+ * The RoutingTableFootprint class compares the heap used by the primitive
+ * routing tables against the HashMap of Routing objects the nodes used before.
+ * It fills the same number of tables with the same entries in both layouts
+ * and prints the retained bytes per entry.
+ *
+ * Usage: java RoutingTableFootprint [tables] [entriesPerTable]
+ *
+ * @since 2023-05-25
+ */
+public class RoutingTableFootprint {
+
+    /**
+     * The entry of the old layout: event ID, distance and a reference to the next node.
+     */
+    private static final class BoxedRouting {
+        private final int eventID;
+        private final int distance;
+        private final Object nextNode;
+
+        private BoxedRouting(int eventID, int distance, Object nextNode) {
+            this.eventID = eventID;
+            this.distance = distance;
+            this.nextNode = nextNode;
+        }
+    }
+
+    public static void main(String[] args) {
+        int tables = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int entries = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+        Object nextNode = new Object();
+
+        long before = usedHeap();
+        Object[] boxed = new Object[tables];
+        for (int t = 0; t < tables; t++) {
+            HashMap<Integer, BoxedRouting> table = new HashMap<>();
+            for (int e = 0; e < entries; e++) {
+                int eventID = t + e * 7;
+                table.put(eventID, new BoxedRouting(eventID, e, nextNode));
+            }
+            boxed[t] = table;
+        }
+        long boxedBytes = usedHeap() - before;
+
+        before = usedHeap();
+        Object[] primitive = new Object[tables];
+        for (int t = 0; t < tables; t++) {
+            RoutingTable table = new IntRoutingTable();
+            for (int e = 0; e < entries; e++) {
+                table.put(t + e * 7, e, t);
+            }
+            primitive[t] = table;
+        }
+        long primitiveBytes = usedHeap() - before;
+
+        long totalEntries = (long) tables * entries;
+        System.out.println("Tables: " + tables + ", entries per table: " + entries);
+        System.out.println("HashMap<Integer, Routing>: " + boxedBytes + " bytes, "
+                + boxedBytes / totalEntries + " bytes per entry");
+        System.out.println("IntRoutingTable: " + primitiveBytes + " bytes, "
+                + primitiveBytes / totalEntries + " bytes per entry");
+
+        /*Keep both layouts reachable until they have been measured*/
+        if (boxed.length + primitive.length < 0) {
+            System.out.println();
+        }
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,190 @@
+import java.util.List;
+import java.util.Arrays;
+
+/**
+ * The SpatialGrid class is a uniform grid index over the positions of the
+ * nodes in the environment. Every node is bucketed into a square cell that is
+ * at least as wide as the radio range, so all nodes within range of a node
+ * are found in the 3x3 block of cells around it.
+ *
+ * The cells are stored in a counting-sort layout: cellStart holds where each
+ * cell begins in cellNodes, which holds node indices in ascending order per cell.
+ *
+ * @since 2023-05-25
+ */
+public class SpatialGrid {
+    /**
+     * Upper bound on the number of cells per node, the cell size is doubled
+     * until the grid fits, so sparse planes don't allocate a huge grid.
+     */
+    private static final int MAX_CELLS_PER_NODE = 4;
+
+    private final int[] xs;
+    private final int[] ys;
+    private final int minX;
+    private final int minY;
+    private final int cellSize;
+    private final int columns;
+    private final int rows;
+    private final int[] cellStart;
+    private final int[] cellNodes;
+
+    /**
+     * Constructs a grid over the given positions.
+     *
+     * @param positions The positions of the nodes, indexed by node index.
+     * @param radioRange The radio range, used as the smallest cell size.
+     */
+    public SpatialGrid(List<Position> positions, int radioRange) {
+        if (radioRange < 1) {
+            throw new IllegalArgumentException("Radio range must be positive: " + radioRange);
+        }
+        int size = positions.size();
+        xs = new int[size];
+        ys = new int[size];
+        int lowX = Integer.MAX_VALUE;
+        int lowY = Integer.MAX_VALUE;
+        int highX = Integer.MIN_VALUE;
+        int highY = Integer.MIN_VALUE;
+        for (int i = 0; i < size; i++) {
+            Position position = positions.get(i);
+            xs[i] = position.getX();
+            ys[i] = position.getY();
+            lowX = Math.min(lowX, xs[i]);
+            lowY = Math.min(lowY, ys[i]);
+            highX = Math.max(highX, xs[i]);
+            highY = Math.max(highY, ys[i]);
+        }
+        if (size == 0) {
+            lowX = lowY = highX = highY = 0;
+        }
+        minX = lowX;
+        minY = lowY;
+
+        /*Grow the cells until the grid is bounded by the number of nodes*/
+        long maxCells = Math.max(1024L, (long) MAX_CELLS_PER_NODE * size);
+        long cell = radioRange;
+        while (cellCount(highX - (long) lowX, cell) * cellCount(highY - (long) lowY, cell) > maxCells) {
+            cell *= 2;
+        }
+        cellSize = (int) Math.min(cell, Integer.MAX_VALUE);
+        columns = (int) cellCount(highX - (long) lowX, cellSize);
+        rows = (int) cellCount(highY - (long) lowY, cellSize);
+
+        /*Counting sort of node indices into cells, stable so each cell is ascending*/
+        cellStart = new int[columns * rows + 1];
+        int[] cellOf = new int[size];
+        for (int i = 0; i < size; i++) {
+            cellOf[i] = cellIndex(column(xs[i]), row(ys[i]));
+            cellStart[cellOf[i] + 1]++;
+        }
+        for (int c = 0; c < columns * rows; c++) {
+            cellStart[c + 1] += cellStart[c];
+        }
+        cellNodes = new int[size];
+        int[] fill = Arrays.copyOf(cellStart, cellStart.length - 1);
+        for (int i = 0; i < size; i++) {
+            cellNodes[fill[cellOf[i]]++] = i;
+        }
+    }
+
+    /**
+     * Finds the indices of all nodes within the radio range of the given node,
+     * excluding nodes at the exact same position (which includes the node itself).
+     *
+     * @param nodeIndex The index of the node to find neighbours for.
+     * @param radioRange The radio range, must not be larger than the one the grid was built with.
+     * @param result Buffer the indices are written to, must be large enough for all nodes.
+     * @return The number of neighbours written to result, in ascending index order.
+     */
+    public int neighboursOf(int nodeIndex, int radioRange, int[] result) {
+        long rangeSquared = (long) radioRange * radioRange;
+        int x = xs[nodeIndex];
+        int y = ys[nodeIndex];
+        int column = column(x);
+        int row = row(y);
+        int count = 0;
+        for (int r = Math.max(0, row - 1); r <= Math.min(rows - 1, row + 1); r++) {
+            for (int c = Math.max(0, column - 1); c <= Math.min(columns - 1, column + 1); c++) {
+                int cell = cellIndex(c, r);
+                for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                    int other = cellNodes[k];
+                    long dx = xs[other] - (long) x;
+                    long dy = ys[other] - (long) y;
+                    long distanceSquared = dx * dx + dy * dy;
+                    if (distanceSquared != 0 && distanceSquared <= rangeSquared) {
+                        result[count++] = other;
+                    }
+                }
+            }
+        }
+        /*Same order as the pairwise scan*/
+        Arrays.sort(result, 0, count);
+        return count;
+    }
+
+    /**
+     * Finds the node closest to a position, which doesn't have to be the
+     * position of a node or inside the grid. The cells are searched in
+     * rings around the cell of the position until no closer node can be in
+     * the next ring.
+     *
+     * @param x The x coordinate.
+     * @param y The y coordinate.
+     * @return The index of the closest node, the lowest index among equally
+     * close ones, or -1 if there are no nodes.
+     */
+    public int nearest(int x, int y) {
+        long column = Math.floorDiv(x - (long) minX, cellSize);
+        long row = Math.floorDiv(y - (long) minY, cellSize);
+        /*Beyond this ring every cell is outside the grid*/
+        long lastRing = Math.max(Math.max(column, columns - 1 - column), Math.max(row, rows - 1 - row));
+        /*The rings before this one miss the grid*/
+        long firstRing = Math.max(Math.max(-column, column - (columns - 1)), Math.max(-row, row - (rows - 1)));
+        int best = -1;
+        long bestDistance = Long.MAX_VALUE;
+        for (long ring = Math.max(0, firstRing); ring <= lastRing; ring++) {
+            for (long r = Math.max(0, row - ring); r <= Math.min(rows - 1, row + ring); r++) {
+                boolean edgeRow = r == row - ring || r == row + ring;
+                for (long c = Math.max(0, column - ring); c <= Math.min(columns - 1, column + ring); c++) {
+                    if (!edgeRow && c != column - ring && c != column + ring) {
+                        continue;
+                    }
+                    int cell = cellIndex((int) c, (int) r);
+                    for (int k = cellStart[cell]; k < cellStart[cell + 1]; k++) {
+                        int node = cellNodes[k];
+                        long dx = xs[node] - (long) x;
+                        long dy = ys[node] - (long) y;
+                        long distance = dx * dx + dy * dy;
+                        if (distance < bestDistance || (distance == bestDistance && node < best)) {
+                            best = node;
+                            bestDistance = distance;
+                        }
+                    }
+                }
+            }
+            /*Nodes in the rings further out are at least this far away*/
+            long reach = ring * cellSize;
+            if (best >= 0 && bestDistance <= reach * reach) {
+                break;
+            }
+        }
+        return best;
+    }
+
+    private static long cellCount(long extent, long cell) {
+        return extent / cell + 1;
+    }
+
+    private int column(int x) {
+        return (int) ((x - (long) minX) / cellSize);
+    }
+
+    private int row(int y) {
+        return (int) ((y - (long) minY) / cellSize);
+    }
+
+    private int cellIndex(int column, int row) {
+        return row * columns + column;
+    }
+}
@@ -0,0 +1,137 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * The SplitMixRandom class is a random number generator that gives exactly
+ * the same numbers as java.util.SplittableRandom with the same seed, for
+ * the methods the simulation uses. Unlike SplittableRandom its state can be
+ * saved and restored, so a simulation can be checkpointed and resumed.
+ *
+ * @since 2023-05-25
+ */
+public final class SplitMixRandom {
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long seed;
+    private long gamma;
+
+    /**
+     * Constructs a generator from a seed.
+     *
+     * @param seed The seed.
+     */
+    public SplitMixRandom(long seed) {
+        this(seed, GOLDEN_GAMMA);
+    }
+
+    private SplitMixRandom(long seed, long gamma) {
+        this.seed = seed;
+        this.gamma = gamma;
+    }
+
+    /**
+     * Constructs a new generator that shares no state with this one, and
+     * advances this one.
+     *
+     * @return The new generator.
+     */
+    public SplitMixRandom split() {
+        return new SplitMixRandom(nextLong(), mixGamma(nextSeed()));
+    }
+
+    /**
+     * Draws a random long.
+     *
+     * @return The number.
+     */
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    /**
+     * Draws a random int.
+     *
+     * @return The number.
+     */
+    public int nextInt() {
+        return mix32(nextSeed());
+    }
+
+    /**
+     * Draws a random int from 0 up to but not including the bound.
+     *
+     * @param bound The bound, must be positive.
+     * @return The number.
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("Bound must be positive: " + bound);
+        }
+        int r = nextInt();
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            r &= m;
+        } else {
+            for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = nextInt() >>> 1) {
+                /*Draw again so every value is equally likely*/
+            }
+        }
+        return r;
+    }
+
+    /**
+     * Draws a random double from 0 up to but not including 1.
+     *
+     * @return The number.
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    /**
+     * Saves the state of the generator.
+     *
+     * @param output Where the state is written.
+     * @throws IOException If writing fails.
+     */
+    public void writeState(DataOutput output) throws IOException {
+        output.writeLong(seed);
+        output.writeLong(gamma);
+    }
+
+    /**
+     * Restores a state saved by writeState.
+     *
+     * @param input Where the state is read from.
+     * @throws IOException If reading fails.
+     */
+    public void readState(DataInput input) throws IOException {
+        seed = input.readLong();
+        gamma = input.readLong();
+    }
+
+    private long nextSeed() {
+        return seed += gamma;
+    }
+
+    private static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+    private static long mixGamma(long z) {
+        z = (z ^ (z >>> 33)) * 0xff51afd7ed558ccdL;
+        z = (z ^ (z >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        z = (z ^ (z >>> 33)) | 1L;
+        int n = Long.bitCount(z ^ (z >>> 1));
+        return (n < 24) ? z ^ 0xaaaaaaaaaaaaaaaaL : z;
+    }
+}
@@ -0,0 +1,56 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Scanner;
+
+/**
+ * The TickEngineBenchmark class measures how the parallel tick engine scales
+ * with the number of threads. It runs the same topology with the sequential
+ * loop and then with the parallel engine on 1 up to the given number of
+ * threads, and prints the time per time step and the speedup.
+ *
+ * Every run uses the same seed, so they all simulate the same thing.
+ *
+ * Usage: java TickEngineBenchmark topologyFile [timeSteps] [maxThreads] [seed]
+ *
+ * @since 2023-05-25
+ */
+public class TickEngineBenchmark {
+    public static void main(String[] args) throws FileNotFoundException {
+        File inputFile = new File(args[0]);
+        int timeSteps = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int maxThreads = args.length > 2 ? Integer.parseInt(args[2])
+                : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+
+        double sequential = run(inputFile, timeSteps, 0, seed);
+        System.out.printf("sequential: %.3f ms per time step%n", sequential);
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            double parallel = run(inputFile, timeSteps, threads, seed);
+            System.out.printf("%d threads: %.3f ms per time step, speedup %.2f%n",
+                    threads, parallel, sequential / parallel);
+        }
+    }
+
+    /**
+     * Runs one simulation and measures it, the first quarter of the time steps
+     * is used to warm up.
+     *
+     * @return The average milliseconds per measured time step.
+     */
+    private static double run(File inputFile, int timeSteps, int threads, long seed) throws FileNotFoundException {
+        Environment environment = new Environment(new Scanner(inputFile), Environment.DEFAULT_RADIO_RANGE, false, seed);
+        environment.setParallelism(threads);
+        environment.setResultSink(ResultSink.NONE);
+        int warmUp = timeSteps / 4;
+        for (int i = 0; i < warmUp; i++) {
+            environment.performRumorRouting();
+        }
+        long start = System.nanoTime();
+        for (int i = warmUp; i < timeSteps; i++) {
+            environment.performRumorRouting();
+        }
+        long elapsed = System.nanoTime() - start;
+        environment.setParallelism(0);
+        return elapsed / 1e6 / (timeSteps - warmUp);
+    }
+}
@@ -0,0 +1,70 @@
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * The TickPhaseEvent class is a Java Flight Recorder event covering one
+ * phase of a time step, so a recording shows what the simulation was doing
+ * next to GC pauses and lock stalls. When the event isn't recorded the JIT
+ * compiler removes it, so it costs close to nothing.
+ *
+ * @since 2023-05-25
+ */
+@Name("rumor.TickPhase")
+@Label("Tick Phase")
+@Category("Rumor Routing")
+@Description("One phase of a simulation time step")
+@StackTrace(false)
+public class TickPhaseEvent extends Event {
+    /**
+     * Events older than the maximum age of the retention policy expire. Only
+     * happens when events can expire.
+     */
+    public static final String EVENT_EXPIRY = "eventExpiry";
+
+    /**
+     * New requests are sent from the request nodes.
+     */
+    public static final String REQUEST_INJECTION = "requestInjection";
+
+    /**
+     * Requests that returned or timed out are handled.
+     */
+    public static final String REQUEST_BOOKKEEPING = "requestBookkeeping";
+
+    /**
+     * The nodes that get an event are found, and in the parallel engine the
+     * events are created. The sequential loop creates them while sending.
+     */
+    public static final String EVENT_GENERATION = "eventGeneration";
+
+    /**
+     * The nodes send their messages.
+     */
+    public static final String MESSAGE_SENDING = "messageSending";
+
+    /**
+     * The time step ends, which is when busy nodes become free.
+     */
+    public static final String BUSY_RESET = "busyReset";
+
+    @Label("Phase")
+    private final String phase;
+
+    @Label("Time Step")
+    private final int timeStep;
+
+    /**
+     * Constructs an event for a phase.
+     *
+     * @param phase The phase, one of the constants of this class.
+     * @param timeStep The time step of the environment.
+     */
+    public TickPhaseEvent(String phase, int timeStep) {
+        this.phase = phase;
+        this.timeStep = timeStep;
+    }
+}
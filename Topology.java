@@ -0,0 +1,273 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Scanner;
+
+/**
+ * The Topology class holds the positions of the nodes and who is neighbour
+ * with whom. The neighbours are stored in compressed sparse row layout: the
+ * neighbours of node i are the node indices in neighbourIndex from
+ * neighbourStart[i] up to neighbourStart[i + 1], in ascending order.
+ *
+ * The topology is built once when the environment is loaded and never
+ * changes afterwards.
+ *
+ * @since 2023-05-25
+ */
+public class Topology {
+    private final Position[] positions;
+    private final int[] neighbourStart;
+    private final int[] neighbourIndex;
+    private final int radioRange;
+    private final int maxDegree;
+
+    /**
+     * Constructs a topology by finding the neighbours of every node.
+     *
+     * @param positions The positions of the nodes, indexed by node index.
+     * @param radioRange The distance within which two nodes are neighbours.
+     * @param pairwiseNeighbourScan True to use the reference scan that compares every
+     *                              pair of nodes instead of the spatial grid.
+     */
+    public Topology(List<Position> positions, int radioRange, boolean pairwiseNeighbourScan) {
+        if (radioRange < 1) {
+            throw new IllegalArgumentException("Radio range must be positive: " + radioRange);
+        }
+        this.positions = positions.toArray(new Position[0]);
+        this.radioRange = radioRange;
+        this.neighbourStart = new int[this.positions.length + 1];
+
+        int[] adjacency = new int[Math.max(16, this.positions.length)];
+        int count = 0;
+        int[] found = new int[this.positions.length];
+        SpatialGrid grid = pairwiseNeighbourScan ? null : new SpatialGrid(positions, radioRange);
+        int degree = 0;
+        for (int nodeIndex = 0; nodeIndex < this.positions.length; nodeIndex++) {
+            int neighbours = pairwiseNeighbourScan
+                    ? neighboursPairwise(nodeIndex, found)
+                    : grid.neighboursOf(nodeIndex, radioRange, found);
+            if (count + neighbours > adjacency.length) {
+                adjacency = Arrays.copyOf(adjacency, Math.max(adjacency.length * 2, count + neighbours));
+            }
+            System.arraycopy(found, 0, adjacency, count, neighbours);
+            count += neighbours;
+            neighbourStart[nodeIndex + 1] = count;
+            degree = Math.max(degree, neighbours);
+        }
+        this.neighbourIndex = Arrays.copyOf(adjacency, count);
+        this.maxDegree = degree;
+    }
+
+    /**
+     * Constructs a topology from neighbours that were found before, for
+     * example stored in a binary topology file. The neighbours must be in
+     * the layout described for the class.
+     *
+     * @param positions The positions of the nodes, indexed by node index.
+     * @param neighbourStart Where the neighbours of every node start, one more than the number of nodes.
+     * @param neighbourIndex The neighbours of all nodes after each other.
+     * @param radioRange The distance the neighbours were found with.
+     */
+    public Topology(Position[] positions, int[] neighbourStart, int[] neighbourIndex, int radioRange) {
+        if (radioRange < 1) {
+            throw new IllegalArgumentException("Radio range must be positive: " + radioRange);
+        }
+        if (neighbourStart.length != positions.length + 1 || neighbourStart[0] != 0
+                || neighbourStart[positions.length] != neighbourIndex.length) {
+            throw new IllegalArgumentException("Neighbours don't match the " + positions.length + " nodes");
+        }
+        this.positions = positions;
+        this.neighbourStart = neighbourStart;
+        this.neighbourIndex = neighbourIndex;
+        this.radioRange = radioRange;
+        int degree = 0;
+        for (int nodeIndex = 0; nodeIndex < positions.length; nodeIndex++) {
+            int neighbours = neighbourStart[nodeIndex + 1] - neighbourStart[nodeIndex];
+            if (neighbours < 0) {
+                throw new IllegalArgumentException("Neighbours of node " + nodeIndex + " are out of order");
+            }
+            degree = Math.max(degree, neighbours);
+        }
+        for (int neighbour : neighbourIndex) {
+            if (neighbour < 0 || neighbour >= positions.length) {
+                throw new IllegalArgumentException("Neighbour out of range: " + neighbour);
+            }
+        }
+        this.maxDegree = degree;
+    }
+
+    /**
+     * Reads a topology: the number of nodes on the first line, then one line
+     * with the x and y coordinate of every node, separated by a comma.
+     *
+     * @param input A Scanner object
+     * @param radioRange The distance within which two nodes are neighbours.
+     * @param pairwiseNeighbourScan True to use the reference scan that compares every
+     *                              pair of nodes instead of the spatial grid.
+     * @return The topology.
+     */
+    public static Topology read(Scanner input, int radioRange, boolean pairwiseNeighbourScan) {
+        int numberOfNodes = input.nextInt();
+
+        /*Move to the next line after reading the number of nodes*/
+        input.nextLine();
+
+        ArrayList<Position> positions = new ArrayList<>(numberOfNodes);
+        for (int i = 0; i < numberOfNodes; i++) {
+            String line = input.nextLine();
+            String[] lineArray = line.split(",");
+            positions.add(new Position(Integer.parseInt(lineArray[0]), Integer.parseInt(lineArray[1])));
+        }
+        return new Topology(positions, radioRange, pairwiseNeighbourScan);
+    }
+
+    /**
+     * Saves the positions and neighbours for a checkpoint.
+     *
+     * @param output Where the topology is written.
+     * @throws IOException If writing fails.
+     */
+    public void writeState(DataOutput output) throws IOException {
+        output.writeInt(radioRange);
+        output.writeInt(positions.length);
+        for (Position position : positions) {
+            output.writeInt(position.getX());
+            output.writeInt(position.getY());
+        }
+        for (int start : neighbourStart) {
+            output.writeInt(start);
+        }
+        for (int neighbour : neighbourIndex) {
+            output.writeInt(neighbour);
+        }
+    }
+
+    /**
+     * Reads a topology saved by writeState.
+     *
+     * @param input Where the topology is read from.
+     * @return The topology.
+     * @throws IOException If reading fails or the topology is malformed.
+     */
+    public static Topology readState(DataInput input) throws IOException {
+        int range = input.readInt();
+        int count = input.readInt();
+        if (count < 0) {
+            throw new IOException("Negative number of nodes: " + count);
+        }
+        Position[] positions = new Position[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = new Position(input.readInt(), input.readInt());
+        }
+        int[] start = new int[count + 1];
+        for (int i = 0; i <= count; i++) {
+            start[i] = input.readInt();
+        }
+        if (start[count] < 0) {
+            throw new IOException("Negative number of neighbours: " + start[count]);
+        }
+        int[] index = new int[start[count]];
+        for (int i = 0; i < index.length; i++) {
+            index[i] = input.readInt();
+        }
+        try {
+            return new Topology(positions, start, index, range);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed topology: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reference way of finding the neighbours, compares the node with every
+     * other node. Gives the same neighbours, in the same order, as the grid.
+     */
+    private int neighboursPairwise(int nodeIndex, int[] result) {
+        Position currentPosition = positions[nodeIndex];
+        int count = 0;
+        for (int otherIndex = 0; otherIndex < positions.length; otherIndex++) {
+            Position otherPosition = positions[otherIndex];
+            if (!currentPosition.equals(otherPosition)) {
+                double distance = currentPosition.distance(otherPosition);
+                if (distance <= radioRange) {
+                    result[count++] = otherIndex;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Gets the number of nodes.
+     *
+     * @return The number of nodes.
+     */
+    public int size() {
+        return positions.length;
+    }
+
+    /**
+     * Gets the position of a node.
+     *
+     * @param nodeIndex The index of the node.
+     * @return The position of the node.
+     */
+    public Position getPosition(int nodeIndex) {
+        return positions[nodeIndex];
+    }
+
+    /**
+     * Gets the number of neighbours of a node.
+     *
+     * @param nodeIndex The index of the node.
+     * @return The number of neighbours.
+     */
+    public int degree(int nodeIndex) {
+        return neighbourStart[nodeIndex + 1] - neighbourStart[nodeIndex];
+    }
+
+    /**
+     * Gets a neighbour of a node.
+     *
+     * @param nodeIndex The index of the node.
+     * @param i Which neighbour, from 0 up to the degree of the node.
+     * @return The index of the neighbour.
+     */
+    public int neighbour(int nodeIndex, int i) {
+        return neighbourIndex[neighbourStart[nodeIndex] + i];
+    }
+
+    /**
+     * Copies the neighbours of a node into a buffer.
+     *
+     * @param nodeIndex The index of the node.
+     * @param buffer The buffer, at least as long as the degree of the node.
+     * @return The number of neighbours copied.
+     */
+    public int copyNeighbours(int nodeIndex, int[] buffer) {
+        int start = neighbourStart[nodeIndex];
+        int degree = neighbourStart[nodeIndex + 1] - start;
+        System.arraycopy(neighbourIndex, start, buffer, 0, degree);
+        return degree;
+    }
+
+    /**
+     * Gets the largest number of neighbours any node has.
+     *
+     * @return The largest degree.
+     */
+    public int getMaxDegree() {
+        return maxDegree;
+    }
+
+    /**
+     * Gets the radio range the neighbours were found with.
+     *
+     * @return The distance within which two nodes are neighbours.
+     */
+    public int getRadioRange() {
+        return radioRange;
+    }
+}
@@ -0,0 +1,40 @@
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * The TopologyConverter class converts a topology file, text or binary, to
+ * the text format, the binary format, or the binary format with the
+ * neighbours found with the given radio range stored as well.
+ *
+ * Usage: java TopologyConverter inputFile outputFile [text|binary|binary-neighbours] [radioRange]
+ *
+ * @since 2023-05-25
+ */
+public class TopologyConverter {
+    public static void main(String[] args) throws IOException {
+        Path input = Path.of(args[0]);
+        Path output = Path.of(args[1]);
+        String format = args.length > 2 ? args[2] : "binary-neighbours";
+        int radioRange = args.length > 3 ? Integer.parseInt(args[3]) : Environment.DEFAULT_RADIO_RANGE;
+
+        long start = System.nanoTime();
+        Topology topology = TopologyFiles.read(input, radioRange);
+        long read = System.nanoTime();
+        switch (format) {
+            case "text":
+                TopologyFiles.writeText(topology, output);
+                break;
+            case "binary":
+                TopologyFiles.writeBinary(topology, output, false);
+                break;
+            case "binary-neighbours":
+                TopologyFiles.writeBinary(topology, output, true);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown format: " + format);
+        }
+        long written = System.nanoTime();
+        System.out.printf("Read %d nodes in %.1f ms, wrote %s in %.1f ms%n",
+                topology.size(), (read - start) / 1e6, format, (written - read) / 1e6);
+    }
+}
@@ -0,0 +1,299 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * The TopologyFiles class reads and writes topology files in two formats.
+ *
+ * The text format is the number of nodes on the first line, then one line
+ * with the x and y coordinate of every node, separated by a comma. It is
+ * read from a memory mapped file byte by byte, without making any strings.
+ * Spaces around the numbers are allowed, anything else on a line is an
+ * error that names the line.
+ *
+ * The binary format is made of little endian ints:
+ * a magic number, the format version, the number of nodes n, flags and the
+ * radio range the neighbours were found with, then x and y of every node.
+ * If the flag HAS_NEIGHBOURS is set the neighbours follow in the layout of
+ * Topology: n + 1 starts, the number of neighbour entries m and m
+ * neighbours. Reading it copies the ints straight into the arrays.
+ *
+ * @since 2023-05-25
+ */
+public final class TopologyFiles {
+    /**
+     * The first four bytes of a binary topology file, "RRTP" in ASCII.
+     */
+    public static final int MAGIC = 0x50545252;
+    private static final int VERSION = 1;
+    private static final int HAS_NEIGHBOURS = 1;
+    private static final int HEADER_INTS = 5;
+
+    private TopologyFiles() {
+    }
+
+    /**
+     * Reads a topology from a text or binary file, telling them apart by the
+     * magic number. The neighbours stored in a binary file are used if they
+     * were found with the same radio range, otherwise they are found again.
+     *
+     * @param file The file.
+     * @param radioRange The distance within which two nodes are neighbours.
+     * @return The topology.
+     * @throws IOException If the file can't be read or is malformed.
+     */
+    public static Topology read(Path file, int radioRange) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Topology file is larger than 2 GB: " + file);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (size >= Integer.BYTES && buffer.getInt(0) == MAGIC) {
+                return readBinary(buffer, radioRange, file);
+            }
+            return new Topology(Arrays.asList(readText(buffer, file)), radioRange, false);
+        }
+    }
+
+    /**
+     * Parses the text format, one line at a time. Lines after the last node are ignored.
+     */
+    private static Position[] readText(ByteBuffer buffer, Path file) throws IOException {
+        TextCursor cursor = new TextCursor(buffer, file);
+        int[] values = new int[2];
+        cursor.readLine(values, 1);
+        int count = values[0];
+        if (count < 0) {
+            throw new IOException("Negative number of nodes on line 1 of " + file);
+        }
+        Position[] positions = new Position[count];
+        for (int i = 0; i < count; i++) {
+            cursor.readLine(values, 2);
+            positions[i] = new Position(values[0], values[1]);
+        }
+        return positions;
+    }
+
+    private static Topology readBinary(ByteBuffer buffer, int radioRange, Path file) throws IOException {
+        IntBuffer ints = buffer.asIntBuffer();
+        if (ints.remaining() < HEADER_INTS) {
+            throw new IOException("Truncated header in " + file);
+        }
+        ints.get();
+        int version = ints.get();
+        int count = ints.get();
+        int flags = ints.get();
+        int storedRange = ints.get();
+        if (version != VERSION) {
+            throw new IOException("Unsupported topology file version " + version + " in " + file);
+        }
+        if (count < 0 || ints.remaining() < 2L * count) {
+            throw new IOException("Truncated positions in " + file);
+        }
+        int[] coordinates = new int[2 * count];
+        ints.get(coordinates);
+        Position[] positions = new Position[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = new Position(coordinates[2 * i], coordinates[2 * i + 1]);
+        }
+
+        if ((flags & HAS_NEIGHBOURS) == 0 || storedRange != radioRange) {
+            return new Topology(Arrays.asList(positions), radioRange, false);
+        }
+        if (ints.remaining() < count + 2L) {
+            throw new IOException("Truncated neighbours in " + file);
+        }
+        int[] neighbourStart = new int[count + 1];
+        ints.get(neighbourStart);
+        int entries = ints.get();
+        if (entries < 0 || ints.remaining() < entries) {
+            throw new IOException("Truncated neighbours in " + file);
+        }
+        int[] neighbourIndex = new int[entries];
+        ints.get(neighbourIndex);
+        try {
+            return new Topology(positions, neighbourStart, neighbourIndex, radioRange);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed neighbours in " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes a topology in the text format.
+     *
+     * @param topology The topology.
+     * @param file The file, replaced if it exists.
+     * @throws IOException If the file can't be written.
+     */
+    public static void writeText(Topology topology, Path file) throws IOException {
+        try (BufferedWriter output = Files.newBufferedWriter(file, StandardCharsets.US_ASCII)) {
+            output.write(Integer.toString(topology.size()));
+            output.newLine();
+            for (int i = 0; i < topology.size(); i++) {
+                Position position = topology.getPosition(i);
+                output.write(position.getX() + "," + position.getY());
+                output.newLine();
+            }
+        }
+    }
+
+    /**
+     * Writes a topology in the binary format.
+     *
+     * @param topology The topology.
+     * @param file The file, replaced if it exists.
+     * @param withNeighbours True to store the neighbours so they don't have to be found when read.
+     * @throws IOException If the file can't be written.
+     */
+    public static void writeBinary(Topology topology, Path file, boolean withNeighbours) throws IOException {
+        int count = topology.size();
+        int entries = 0;
+        if (withNeighbours) {
+            for (int i = 0; i < count; i++) {
+                entries += topology.degree(i);
+            }
+        }
+        long ints = HEADER_INTS + 2L * count + (withNeighbours ? count + 2L + entries : 0);
+        if (ints * Integer.BYTES > Integer.MAX_VALUE) {
+            throw new IOException("Topology is too large for one file: " + count + " nodes");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) (ints * Integer.BYTES)).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(count)
+                .putInt(withNeighbours ? HAS_NEIGHBOURS : 0).putInt(topology.getRadioRange());
+        for (int i = 0; i < count; i++) {
+            Position position = topology.getPosition(i);
+            buffer.putInt(position.getX()).putInt(position.getY());
+        }
+        if (withNeighbours) {
+            int start = 0;
+            for (int i = 0; i < count; i++) {
+                buffer.putInt(start);
+                start += topology.degree(i);
+            }
+            buffer.putInt(start);
+            buffer.putInt(entries);
+            for (int i = 0; i < count; i++) {
+                for (int k = 0; k < topology.degree(i); k++) {
+                    buffer.putInt(topology.neighbour(i, k));
+                }
+            }
+        }
+        buffer.flip();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Reads lines of comma separated ints from the bytes of a text file.
+     */
+    private static final class TextCursor {
+        private final ByteBuffer buffer;
+        private final Path file;
+        private int position;
+        private int lineNumber;
+
+        private TextCursor(ByteBuffer buffer, Path file) {
+            this.buffer = buffer;
+            this.file = file;
+        }
+
+        /**
+         * Reads the next line, which must hold exactly the given number of ints.
+         */
+        private void readLine(int[] values, int count) throws IOException {
+            int limit = buffer.limit();
+            lineNumber++;
+            if (position >= limit) {
+                throw new IOException("Unexpected end of " + file + " at line " + lineNumber);
+            }
+            int end = position;
+            while (end < limit && buffer.get(end) != '\n') {
+                end++;
+            }
+            int lineEnd = end > position && buffer.get(end - 1) == '\r' ? end - 1 : end;
+            int fields = 0;
+            int from = position;
+            while (true) {
+                int comma = from;
+                while (comma < lineEnd && buffer.get(comma) != ',') {
+                    comma++;
+                }
+                if (fields == count) {
+                    throw new IOException("Expected " + count + (count == 1 ? " number" : " comma separated numbers")
+                            + " on line " + lineNumber + " of " + file);
+                }
+                values[fields++] = parseInt(from, comma);
+                if (comma == lineEnd) {
+                    break;
+                }
+                from = comma + 1;
+            }
+            if (fields != count) {
+                throw new IOException("Expected " + count + " comma separated numbers on line "
+                        + lineNumber + " of " + file);
+            }
+            position = end + 1;
+        }
+
+        private int parseInt(int from, int to) throws IOException {
+            while (from < to && isBlank(buffer.get(from))) {
+                from++;
+            }
+            while (to > from && isBlank(buffer.get(to - 1))) {
+                to--;
+            }
+            int at = from;
+            boolean negative = at < to && buffer.get(at) == '-';
+            if (negative) {
+                at++;
+            }
+            if (at == to) {
+                throw malformed(from, to);
+            }
+            long value = 0;
+            for (; at < to; at++) {
+                byte b = buffer.get(at);
+                if (b < '0' || b > '9') {
+                    throw malformed(from, to);
+                }
+                value = value * 10 + (b - '0');
+                if (value > (long) Integer.MAX_VALUE + 1) {
+                    throw new IOException("Number out of range on line " + lineNumber + " of " + file);
+                }
+            }
+            value = negative ? -value : value;
+            if (value > Integer.MAX_VALUE) {
+                throw new IOException("Number out of range on line " + lineNumber + " of " + file);
+            }
+            return (int) value;
+        }
+
+        private IOException malformed(int from, int to) {
+            byte[] text = new byte[to - from];
+            for (int i = 0; i < text.length; i++) {
+                text[i] = buffer.get(from + i);
+            }
+            return new IOException("Malformed number \"" + new String(text, StandardCharsets.UTF_8)
+                    + "\" on line " + lineNumber + " of " + file);
+        }
+
+        private static boolean isBlank(byte b) {
+            return b == ' ' || b == '\t';
+        }
+    }
+}
@@ -0,0 +1,130 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * The VisitedSet class is a set of node indices for the random walk of a
+ * message. It is an open-addressing hash set with linear probing, so checking
+ * if a node has been visited takes constant time and adding a node allocates
+ * nothing unless the set has to grow.
+ *
+ * @since 2023-05-25
+ */
+public class VisitedSet {
+    private static final int EMPTY = -1;
+
+    private int[] slots;
+    private int size;
+    private int mask;
+
+    /**
+     * Constructs a set sized for a walk of the given length, so it doesn't
+     * grow while the walk lasts.
+     *
+     * @param expectedNodes The number of nodes expected to be visited.
+     */
+    public VisitedSet(int expectedNodes) {
+        int capacity = Integer.highestOneBit(Math.max(8, expectedNodes * 2) - 1) << 1;
+        slots = new int[capacity];
+        Arrays.fill(slots, EMPTY);
+        mask = capacity - 1;
+    }
+
+    /**
+     * Adds a node to the set.
+     *
+     * @param nodeIndex The index of the node.
+     */
+    public void add(int nodeIndex) {
+        int slot = slotFor(nodeIndex);
+        if (slots[slot] == EMPTY) {
+            slots[slot] = nodeIndex;
+            size++;
+            if (size * 2 > slots.length) {
+                grow();
+            }
+        }
+    }
+
+    /**
+     * Checks if a node is in the set.
+     *
+     * @param nodeIndex The index of the node.
+     * @return True if the node has been visited.
+     */
+    public boolean contains(int nodeIndex) {
+        return slots[slotFor(nodeIndex)] == nodeIndex;
+    }
+
+    /**
+     * Removes all nodes from the set, keeping its capacity.
+     */
+    public void clear() {
+        Arrays.fill(slots, EMPTY);
+        size = 0;
+    }
+
+    /**
+     * Gets the number of nodes in the set.
+     *
+     * @return The number of visited nodes.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Saves the set, slot by slot, so it can be restored exactly.
+     *
+     * @param output Where the set is written.
+     * @throws IOException If writing fails.
+     */
+    public void writeState(DataOutput output) throws IOException {
+        output.writeInt(slots.length);
+        output.writeInt(size);
+        for (int slot : slots) {
+            output.writeInt(slot);
+        }
+    }
+
+    /**
+     * Replaces the set with one saved by writeState.
+     *
+     * @param input Where the set is read from.
+     * @throws IOException If reading fails.
+     */
+    public void readState(DataInput input) throws IOException {
+        int capacity = input.readInt();
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IOException("Bad visited set capacity: " + capacity);
+        }
+        slots = new int[capacity];
+        mask = capacity - 1;
+        size = input.readInt();
+        for (int slot = 0; slot < capacity; slot++) {
+            slots[slot] = input.readInt();
+        }
+    }
+
+    private int slotFor(int nodeIndex) {
+        int h = nodeIndex * 0x9E3779B9;
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (slots[slot] != EMPTY && slots[slot] != nodeIndex) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        int[] old = slots;
+        slots = new int[old.length * 2];
+        Arrays.fill(slots, EMPTY);
+        mask = slots.length - 1;
+        for (int nodeIndex : old) {
+            if (nodeIndex != EMPTY) {
+                slots[slotFor(nodeIndex)] = nodeIndex;
+            }
+        }
+    }
+}
@@ -0,0 +1,252 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * The WalkStrategy class decides which neighbour a request moves to when its
+ * node has no route to the event it is looking for. The uniform walk picks
+ * any neighbour and often goes straight back or around in circles, spending
+ * hops of its duration on nodes it has just seen. The other walks use the
+ * route of the request, the nodes it came through, to avoid that:
+ * - non-backtracking never goes back to the node it just came from, unless
+ *   that is the only neighbour;
+ * - avoid-recent skips the nodes among the last window nodes of the route,
+ *   and picks any neighbour if all of them are recent;
+ * - least-visited picks among the neighbours the route went through the
+ *   fewest times.
+ * Ties and the remaining choices are drawn uniformly from the random of the node.
+ *
+ * @since 2023-05-25
+ */
+public class WalkStrategy {
+    /**
+     * The kinds of walks.
+     */
+    public enum Kind {
+        UNIFORM,
+        NON_BACKTRACKING,
+        AVOID_RECENT,
+        LEAST_VISITED;
+
+        /**
+         * Parses the name of a walk, for example uniform or least-visited.
+         *
+         * @param name The name, in any case, with - or _ between words.
+         * @return The kind of walk.
+         */
+        public static Kind parse(String name) {
+            try {
+                return valueOf(name.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown walk: " + name, e);
+            }
+        }
+    }
+
+    /**
+     * The number of recent nodes avoid-recent skips when none is given.
+     */
+    public static final int DEFAULT_WINDOW = 8;
+
+    /**
+     * The uniform walk, the default.
+     */
+    public static final WalkStrategy UNIFORM = new WalkStrategy(Kind.UNIFORM, DEFAULT_WINDOW);
+
+    private final Kind kind;
+    private final int window;
+
+    /**
+     * Constructs a walk.
+     *
+     * @param kind The kind of walk.
+     * @param window The number of recent nodes of the route avoid-recent skips, ignored by the other walks.
+     */
+    public WalkStrategy(Kind kind, int window) {
+        if (kind == null) {
+            throw new IllegalArgumentException("Kind must not be null");
+        }
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be positive: " + window);
+        }
+        this.kind = kind;
+        this.window = window;
+    }
+
+    /**
+     * Parses a walk, the name of the kind optionally followed by a colon and
+     * the window, for example avoid-recent:4.
+     *
+     * @param walk The walk.
+     * @return The walk.
+     */
+    public static WalkStrategy parse(String walk) {
+        int colon = walk.indexOf(':');
+        if (colon < 0) {
+            return new WalkStrategy(Kind.parse(walk), DEFAULT_WINDOW);
+        }
+        try {
+            return new WalkStrategy(Kind.parse(walk.substring(0, colon)),
+                    Integer.parseInt(walk.substring(colon + 1).trim()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed window: " + walk, e);
+        }
+    }
+
+    /**
+     * Chooses the neighbour a request moves to.
+     *
+     * @param topology The topology.
+     * @param node The node the request is at.
+     * @param route The nodes the request came through, the last one it came from.
+     * @param routeSize The number of nodes in the route.
+     * @param random The random of the node.
+     * @param candidates A buffer with room for the neighbours of any node.
+     * @return The index of the neighbour, or -1 if the node has no neighbours.
+     */
+    public int chooseNeighbour(Topology topology, int node, int[] route, int routeSize,
+                               SplitMixRandom random, int[] candidates) {
+        int degree = topology.degree(node);
+        if (degree == 0) {
+            return -1;
+        }
+        switch (kind) {
+            case NON_BACKTRACKING:
+                return nonBacktracking(topology, node, route, routeSize, random);
+            case AVOID_RECENT:
+                return avoidRecent(topology, node, route, routeSize, random, candidates);
+            case LEAST_VISITED:
+                return leastVisited(topology, node, route, routeSize, random, candidates);
+            default:
+                return topology.neighbour(node, random.nextInt(degree));
+        }
+    }
+
+    private static int nonBacktracking(Topology topology, int node, int[] route, int routeSize,
+                                       SplitMixRandom random) {
+        int degree = topology.degree(node);
+        int previous = routeSize > 0 ? route[routeSize - 1] : -1;
+        int skipped = -1;
+        for (int i = 0; i < degree && previous != node; i++) {
+            if (topology.neighbour(node, i) == previous) {
+                skipped = i;
+                break;
+            }
+        }
+        if (skipped < 0 || degree == 1) {
+            return topology.neighbour(node, random.nextInt(degree));
+        }
+        /*Draw from the other neighbours, shifting past the skipped one*/
+        int drawn = random.nextInt(degree - 1);
+        return topology.neighbour(node, drawn >= skipped ? drawn + 1 : drawn);
+    }
+
+    private int avoidRecent(Topology topology, int node, int[] route, int routeSize,
+                            SplitMixRandom random, int[] candidates) {
+        int degree = topology.copyNeighbours(node, candidates);
+        int first = Math.max(0, routeSize - window);
+        int count = 0;
+        for (int i = 0; i < degree; i++) {
+            if (!contains(route, first, routeSize, candidates[i])) {
+                candidates[count++] = candidates[i];
+            }
+        }
+        if (count == 0) {
+            return topology.neighbour(node, random.nextInt(degree));
+        }
+        return candidates[random.nextInt(count)];
+    }
+
+    private static int leastVisited(Topology topology, int node, int[] route, int routeSize,
+                                    SplitMixRandom random, int[] candidates) {
+        int degree = topology.copyNeighbours(node, candidates);
+        int fewest = Integer.MAX_VALUE;
+        int count = 0;
+        for (int i = 0; i < degree; i++) {
+            int visits = 0;
+            for (int k = 0; k < routeSize; k++) {
+                if (route[k] == candidates[i]) {
+                    visits++;
+                }
+            }
+            if (visits < fewest) {
+                fewest = visits;
+                count = 0;
+            }
+            if (visits == fewest) {
+                candidates[count++] = candidates[i];
+            }
+        }
+        return candidates[random.nextInt(count)];
+    }
+
+    private static boolean contains(int[] values, int from, int to, int value) {
+        for (int i = from; i < to; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Gets the kind of walk.
+     *
+     * @return The kind.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Gets the number of recent nodes avoid-recent skips.
+     *
+     * @return The window.
+     */
+    public int getWindow() {
+        return window;
+    }
+
+    /**
+     * Saves the walk for a checkpoint.
+     *
+     * @param output Where the walk is written.
+     * @throws IOException If writing fails.
+     */
+    public void writeState(DataOutput output) throws IOException {
+        output.writeInt(kind.ordinal());
+        output.writeInt(window);
+    }
+
+    /**
+     * Reads a walk saved by writeState.
+     *
+     * @param input Where the walk is read from.
+     * @return The walk.
+     * @throws IOException If reading fails or the walk is malformed.
+     */
+    public static WalkStrategy readState(DataInput input) throws IOException {
+        int ordinal = input.readInt();
+        int window = input.readInt();
+        if (ordinal < 0 || ordinal >= Kind.values().length) {
+            throw new IOException("Unknown walk: " + ordinal);
+        }
+        try {
+            return new WalkStrategy(Kind.values()[ordinal], window);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Malformed walk: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Gets the walk the way parse reads it, with the window for avoid-recent.
+     *
+     * @return The walk.
+     */
+    @Override
+    public String toString() {
+        String name = kind.name().toLowerCase(Locale.ROOT).replace('_', '-');
+        return kind == Kind.AVOID_RECENT ? name + ":" + window : name;
+    }
+}
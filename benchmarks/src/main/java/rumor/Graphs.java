@@ -0,0 +1,80 @@
+package rumor;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * The Graphs class makes the synthetic topologies the benchmarks run on.
+ *
+ * @since 2023-05-25
+ */
+public final class Graphs {
+    /**
+     * Nodes of a grid are this far apart, so with the default radio range a
+     * node has its 8 surrounding nodes as neighbours.
+     */
+    private static final int GRID_SPACING = 10;
+
+    /**
+     * The average number of neighbours of a node in a random geometric graph.
+     */
+    private static final double RANDOM_DEGREE = 10;
+
+    private Graphs() {
+    }
+
+    /**
+     * The kinds of topologies.
+     */
+    public enum Shape { GRID, RANDOM }
+
+    /**
+     * Makes a topology with the default radio range.
+     *
+     * @param shape The kind of topology.
+     * @param nodes The number of nodes, a grid is rounded down to a square.
+     * @param seed The seed of the random positions.
+     * @return The topology.
+     */
+    public static Topology topology(Shape shape, int nodes, long seed) {
+        return new Topology(positions(shape, nodes, seed), Environment.DEFAULT_RADIO_RANGE, false);
+    }
+
+    /**
+     * Makes the positions of a topology.
+     *
+     * @param shape The kind of topology.
+     * @param nodes The number of nodes, a grid is rounded down to a square.
+     * @param seed The seed of the random positions.
+     * @return The positions.
+     */
+    public static ArrayList<Position> positions(Shape shape, int nodes, long seed) {
+        return shape == Shape.GRID ? grid(nodes) : randomGeometric(nodes, seed);
+    }
+
+    private static ArrayList<Position> grid(int nodes) {
+        int side = (int) Math.sqrt(nodes);
+        ArrayList<Position> positions = new ArrayList<>(side * side);
+        for (int y = 0; y < side; y++) {
+            for (int x = 0; x < side; x++) {
+                positions.add(new Position(x * GRID_SPACING, y * GRID_SPACING));
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Nodes placed uniformly at random in a square that is sized so a node
+     * gets RANDOM_DEGREE neighbours on average.
+     */
+    private static ArrayList<Position> randomGeometric(int nodes, long seed) {
+        double range = Environment.DEFAULT_RADIO_RANGE;
+        int side = (int) Math.ceil(Math.sqrt(nodes * Math.PI * range * range / RANDOM_DEGREE));
+        SplittableRandom random = new SplittableRandom(seed);
+        ArrayList<Position> positions = new ArrayList<>(nodes);
+        for (int i = 0; i < nodes; i++) {
+            positions.add(new Position(random.nextInt(side), random.nextInt(side)));
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,83 @@
+package rumor;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks one hop of an agent: Node.sendMessage choosing a neighbour
+ * through Agent.send, moving the agent and exchanging routing tables with
+ * the neighbour. Every node knows a number of events to begin with, so the
+ * exchange has work to do.
+ *
+ * The time step never ends here, so the nodes the agent passed are made free
+ * again by hand. When the agent runs out of duration or gets stuck it starts
+ * over from where it began.
+ *
+ * @since 2023-05-25
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MessageBenchmark {
+    @Param({"GRID", "RANDOM"})
+    public Graphs.Shape shape;
+
+    @Param({"1000", "10000"})
+    public int nodes;
+
+    /**
+     * The number of events every node knows a route to.
+     */
+    @Param({"32"})
+    public int knownEvents;
+
+    private Node startNode;
+    private Agent agent;
+
+    @Setup
+    public void setup() {
+        Environment environment = new Environment(Graphs.topology(shape, nodes, 1), 1);
+        SplittableRandom random = new SplittableRandom(2);
+        int size = environment.getNumberOfNodes();
+        for (int i = 0; i < size; i++) {
+            RoutingTable table = environment.getNode(i).getRoutingTable();
+            for (int e = 0; e < knownEvents; e++) {
+                table.put(random.nextInt(knownEvents * 4), 1 + random.nextInt(20), random.nextInt(size));
+            }
+        }
+        startNode = environment.getNode(size / 2);
+        agent = new Agent(startNode, Environment.DEFAULT_AGENT_DURATION, 0);
+        startNode.insertMessage(agent);
+    }
+
+    @Benchmark
+    public Node nodeSendMessage() {
+        Node node = agent.getCurrentNode();
+        node.sendMessage();
+        node.setBusyStatus(false);
+        Node next = agent.getCurrentNode();
+        next.setBusyStatus(false);
+        if (next == node || agent.getDurationTime() <= 0) {
+            next.completeSend();
+            next.setBusyStatus(false);
+            agent.reset(startNode, Environment.DEFAULT_AGENT_DURATION, 0);
+            startNode.insertMessage(agent);
+            startNode.setBusyStatus(false);
+        }
+        return next;
+    }
+}
@@ -0,0 +1,67 @@
+package rumor;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks whole time steps of the simulation. The environment first runs
+ * for a while so messages are on their way and the routing tables are filled
+ * in, the tables keep growing slowly during the measurement like in a run.
+ *
+ * @since 2023-05-25
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TickBenchmark {
+    private static final int WARM_UP_STEPS = 2000;
+
+    @Param({"GRID", "RANDOM"})
+    public Graphs.Shape shape;
+
+    @Param({"1000", "10000"})
+    public int nodes;
+
+    /**
+     * 0 for the sequential loop, otherwise the threads of the parallel engine.
+     */
+    @Param({"0"})
+    public int threads;
+
+    private Environment environment;
+
+    @Setup
+    public void setup() {
+        environment = new Environment(Graphs.topology(shape, nodes, 1), 1);
+        environment.setResultSink(ResultSink.NONE);
+        environment.setParallelism(threads);
+        for (int i = 0; i < WARM_UP_STEPS; i++) {
+            environment.performRumorRouting();
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        environment.setParallelism(0);
+    }
+
+    @Benchmark
+    public int performRumorRouting() {
+        environment.performRumorRouting();
+        return environment.getTime();
+    }
+}
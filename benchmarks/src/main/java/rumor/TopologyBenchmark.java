@@ -0,0 +1,52 @@
+package rumor;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks finding the neighbours of every node when a topology is built,
+ * with the spatial grid and with the reference scan of every pair.
+ *
+ * @since 2023-05-25
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TopologyBenchmark {
+    @Param({"GRID", "RANDOM"})
+    public Graphs.Shape shape;
+
+    @Param({"1000", "10000"})
+    public int nodes;
+
+    private ArrayList<Position> positions;
+
+    @Setup
+    public void setup() {
+        positions = Graphs.positions(shape, nodes, 1);
+    }
+
+    @Benchmark
+    public Topology spatialGrid() {
+        return new Topology(positions, Environment.DEFAULT_RADIO_RANGE, false);
+    }
+
+    @Benchmark
+    public Topology pairwise() {
+        return new Topology(positions, Environment.DEFAULT_RADIO_RANGE, true);
+    }
+}
@@ -0,0 +1,83 @@
+package rumor;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the exchange of routing tables between an agent and a node,
+ * Agent.updateTable. The tables are filled in again before every call since
+ * the exchange changes them, the share of events both tables know is a
+ * parameter. A table that is cleared keeps its memory, so the refill
+ * doesn't allocate.
+ *
+ * @since 2023-05-25
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class UpdateTableBenchmark {
+    @Param({"16", "256"})
+    public int events;
+
+    /**
+     * Percent of the events of the agent that the node knows as well.
+     */
+    @Param({"0", "50", "100"})
+    public int overlap;
+
+    private Agent agent;
+    private RoutingTable agentTable;
+    private RoutingTable nodeTable;
+    private int[] agentEvents;
+    private int[] nodeEvents;
+    private int[] distances;
+
+    @Setup
+    public void setup() {
+        Environment environment = new Environment(Graphs.topology(Graphs.Shape.GRID, 100, 1), 1);
+        agent = new Agent(environment.getNode(0), Environment.DEFAULT_AGENT_DURATION, 0);
+        agentTable = new IntRoutingTable();
+        nodeTable = new IntRoutingTable();
+        agentEvents = new int[events];
+        nodeEvents = new int[events];
+        distances = new int[events];
+        int shared = events * overlap / 100;
+        SplittableRandom random = new SplittableRandom(3);
+        for (int i = 0; i < events; i++) {
+            agentEvents[i] = i;
+            nodeEvents[i] = i < shared ? i : events + i;
+            distances[i] = random.nextInt(50);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void fill() {
+        agentTable.clear();
+        nodeTable.clear();
+        for (int i = 0; i < events; i++) {
+            agentTable.put(agentEvents[i], distances[i], i);
+            nodeTable.put(nodeEvents[i], distances[events - 1 - i], i);
+        }
+    }
+
+    @Benchmark
+    public RoutingTable updateTable() {
+        agent.updateTable(agentTable, nodeTable);
+        return nodeTable;
+    }
+}
@@ -0,0 +1,57 @@
+package rumor;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the sequential tick loop doesn't allocate per message once the
+ * simulation has warmed up, measured with the allocation counter of the
+ * thread.
+ *
+ * A few time steps allocate a lot: routing tables double when their nodes
+ * or agents learn new events, and new events and found results are new
+ * objects. Those steps are rare, so the test takes the median of the time
+ * steps in which messages moved. That is what sending messages costs, and
+ * with ring buffer mailboxes and pooled messages it is a few dozen bytes, so
+ * the limit leaves room for a handful of small objects per time step.
+ *
+ * @since 2023-05-25
+ */
+class AllocationRateTest {
+    private static final int WARM_UP_STEPS = 20000;
+    private static final int MEASURED_STEPS = 20000;
+    private static final long MAX_BYTES_PER_STEP = 128;
+
+    @Test
+    void movingMessagesAllocatesNearZeroBytesPerStep() {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Environment environment = new Environment(Graphs.topology(Graphs.Shape.RANDOM, 1000, 1), 1);
+        environment.setResultSink(ResultSink.NONE);
+        for (int i = 0; i < WARM_UP_STEPS; i++) {
+            environment.performRumorRouting();
+        }
+
+        long[] allocated = new long[MEASURED_STEPS];
+        int moving = 0;
+        for (int i = 0; i < MEASURED_STEPS; i++) {
+            long moves = environment.getNumberOfMoves();
+            long before = threads.getCurrentThreadAllocatedBytes();
+            environment.performRumorRouting();
+            long bytes = threads.getCurrentThreadAllocatedBytes() - before;
+            if (environment.getNumberOfMoves() > moves) {
+                allocated[moving++] = bytes;
+            }
+        }
+
+        assertTrue(moving > MEASURED_STEPS / 10, "Too few time steps moved messages: " + moving);
+        long[] sorted = Arrays.copyOf(allocated, moving);
+        Arrays.sort(sorted);
+        long median = sorted[moving / 2];
+        assertTrue(median <= MAX_BYTES_PER_STEP, "A time step that moved messages allocated " + median
+                + " bytes, the limit is " + MAX_BYTES_PER_STEP);
+    }
+}
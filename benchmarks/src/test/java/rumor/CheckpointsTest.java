@@ -0,0 +1,84 @@
+package rumor;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Checks that a run resumed from a checkpoint continues exactly like the run
+ * that was never stopped, counters included, and that a damaged checkpoint
+ * file is rejected. The checkpoints are taken at a few time steps, so some of
+ * them have agents in the pool, whose tables decide the order routes are
+ * learned in once the agents are used again.
+ *
+ * @since 2023-05-25
+ */
+class CheckpointsTest {
+    private static final int AFTER = 4000;
+    /*Every ingested event comes before the earliest checkpoint*/
+    private static final int LAST_INGESTED = 1000;
+
+    @TempDir
+    Path directory;
+
+    @ParameterizedTest
+    @ValueSource(ints = {LAST_INGESTED, 2800, 3000})
+    void resumedRunMatchesUninterruptedRun(int before) throws IOException, InterruptedException {
+        Environment uninterrupted = newEnvironment();
+        uninterrupted.simulate(before + AFTER);
+
+        Environment stopped = newEnvironment();
+        stopped.simulate(before);
+        Environment resumed = Checkpoints.restore(Checkpoints.capture(stopped));
+        resumed.setResultSink(ResultSink.NONE);
+        resumed.simulate(AFTER);
+
+        assertEquals(uninterrupted.toString(), resumed.toString());
+        assertEquals(uninterrupted.getNumberOfMoves(), resumed.getNumberOfMoves());
+        assertEquals(uninterrupted.getNumberOfIngestedEvents(), resumed.getNumberOfIngestedEvents());
+        assertTrue(resumed.getNumberOfIngestedEvents() > 0, "No events were ingested");
+        assertArrayEquals(Checkpoints.capture(uninterrupted), Checkpoints.capture(resumed));
+    }
+
+    @Test
+    void rejectsFileWithWrongChecksum() throws IOException, InterruptedException {
+        Environment environment = newEnvironment();
+        environment.simulate(LAST_INGESTED);
+        Path file = directory.resolve("checkpoint");
+        Checkpoints.write(Checkpoints.capture(environment), file);
+
+        byte[] data = Files.readAllBytes(file);
+        data[data.length / 2] ^= 1;
+        Files.write(file, data);
+
+        IOException failure = assertThrows(IOException.class, () -> Checkpoints.read(file));
+        assertTrue(failure.getMessage().contains("checksum"), failure.getMessage());
+    }
+
+    /**
+     * A seeded environment with a location cache and a few events from the
+     * ingestion, all of them before the checkpoint is taken, since the
+     * events still waiting aren't part of it.
+     */
+    private static Environment newEnvironment() throws InterruptedException {
+        Environment environment = new Environment(Graphs.topology(Graphs.Shape.RANDOM, 500, 1), 42);
+        environment.setResultSink(ResultSink.NONE);
+        environment.setLocationCache(new LocationCache(2000, 64));
+        EventIngestion ingestion = new EventIngestion(environment.getTopology());
+        for (int time = 100; time < LAST_INGESTED; time += 200) {
+            ingestion.submit(time, time % 300, 150);
+        }
+        ingestion.end();
+        environment.setIngestion(ingestion);
+        return environment;
+    }
+}
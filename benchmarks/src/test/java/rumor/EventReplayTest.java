@@ -0,0 +1,66 @@
+package rumor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that replaying a file of events gives the same results every time,
+ * whether the simulation runs ahead of the reader or the whole file has
+ * been read before it starts.
+ *
+ * @since 2023-05-25
+ */
+class EventReplayTest {
+    private static final int EVENTS = 300;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replayDoesNotDependOnReadingSpeed() throws IOException, InterruptedException {
+        Path file = writeEvents();
+
+        String racing = replay(file, 4, false);
+        String preloaded = replay(file, EVENTS, true);
+
+        assertEquals(racing, preloaded);
+        assertEquals(racing, replay(file, 4, false));
+    }
+
+    private static String replay(Path file, int capacity, boolean preload) throws InterruptedException {
+        Environment environment = new Environment(Graphs.topology(Graphs.Shape.RANDOM, 500, 1), 42);
+        StringBuilder found = new StringBuilder();
+        environment.setResultSink(result -> found.append(result).append('\n'));
+        EventIngestion ingestion = new EventIngestion(environment.getTopology(), capacity);
+        environment.setIngestion(ingestion);
+        try (EventFileSource source = new EventFileSource(file, ingestion, false)) {
+            if (preload) {
+                source.awaitEnd();
+            }
+            environment.simulate(10000);
+        }
+        assertEquals(EVENTS, environment.getNumberOfIngestedEvents());
+        return environment + "\n" + found;
+    }
+
+    private Path writeEvents() throws IOException {
+        SplittableRandom random = new SplittableRandom(7);
+        StringBuilder text = new StringBuilder("# time x y\n");
+        int time = 0;
+        for (int i = 0; i < EVENTS; i++) {
+            time += random.nextInt(60);
+            text.append(time).append(' ').append(random.nextInt(300)).append(' ')
+                    .append(random.nextInt(300)).append('\n');
+        }
+        Path file = directory.resolve("events.txt");
+        Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}
@@ -0,0 +1,34 @@
+package rumor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that the parallel engine gives the same results with any number of
+ * threads for a seed: the same counters and the same found events in the
+ * same order.
+ *
+ * @since 2023-05-25
+ */
+class ParallelTickEngineTest {
+    @Test
+    void threadCountDoesNotChangeResults() {
+        String oneThread = run(1);
+        assertEquals(oneThread, run(2));
+        assertEquals(oneThread, run(4));
+    }
+
+    private static String run(int threads) {
+        Environment environment = new Environment(Graphs.topology(Graphs.Shape.RANDOM, 500, 1), 42);
+        StringBuilder found = new StringBuilder();
+        environment.setResultSink(result -> found.append(result).append('\n'));
+        environment.setParallelism(threads);
+        try {
+            environment.simulate(10000);
+        } finally {
+            environment.setParallelism(0);
+        }
+        return environment + "\n" + found;
+    }
+}
@@ -0,0 +1,69 @@
+package rumor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that a simulation split over two worker processes prints the same
+ * found events and totals as one environment on the parallel engine with
+ * the same seed.
+ *
+ * @since 2023-05-25
+ */
+class PartitionCoordinatorTest {
+    private static final int RADIO_RANGE = 15;
+    private static final long SEED = 42;
+    private static final int TIME_STEPS = 10000;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void twoWorkersMatchOneEnvironment() throws IOException, InterruptedException {
+        Path file = directory.resolve("topology.txt");
+        TopologyFiles.writeText(Graphs.topology(Graphs.Shape.RANDOM, 500, 1), file);
+
+        String expected = runEnvironment(file);
+        assertTrue(expected.startsWith("Event ID"), "No events were found: " + expected);
+        assertEquals(expected, runCoordinator(file, 2));
+    }
+
+    private static String runEnvironment(Path file) throws IOException {
+        Environment environment = new Environment(TopologyFiles.read(file, RADIO_RANGE), SEED);
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        AsyncResultWriter results = new AsyncResultWriter(output);
+        environment.setResultSink(results);
+        environment.setParallelism(1);
+        try {
+            environment.simulate(TIME_STEPS);
+        } finally {
+            results.close();
+            environment.setParallelism(0);
+        }
+        return output.toString(StandardCharsets.UTF_8) + environment + System.lineSeparator();
+    }
+
+    /**
+     * Runs the coordinator, which prints to System.out, and returns what it printed.
+     */
+    private static String runCoordinator(Path file, int workers) throws IOException, InterruptedException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(output, true, StandardCharsets.UTF_8));
+        try {
+            PartitionCoordinator.main(new String[]{file.toString(), Integer.toString(workers),
+                    Integer.toString(RADIO_RANGE), "1", Long.toString(SEED), Integer.toString(TIME_STEPS)});
+        } finally {
+            System.setOut(out);
+        }
+        return output.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,47 @@
+package rumor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks that a seeded run of the sequential loop keeps giving the same
+ * counters. Agents count their hops and the distance of a route is worked
+ * out when it is read; a change in that arithmetic changes which routes the
+ * nodes learn and so the events found. With a location cache the found
+ * events only count requests that were sent, so they never outnumber them.
+ *
+ * @since 2023-05-25
+ */
+class SimulationCountersTest {
+    @Test
+    void seededRunKeepsItsCounters() {
+        Environment environment = new Environment(Graphs.topology(Graphs.Shape.RANDOM, 500, 1), 42);
+        environment.setResultSink(ResultSink.NONE);
+        environment.simulate(10000);
+
+        assertEquals("Number of nodes created: 500\n"
+                + "Number of events created: 469\n"
+                + "Number of sent request: 96\n"
+                + "Number of found events: 30", environment.toString());
+    }
+
+    @Test
+    void cachedRunCountsOnlySentRequestsAsFound() {
+        Environment environment = new Environment(Graphs.topology(Graphs.Shape.RANDOM, 200, 1), 42);
+        int[] results = new int[1];
+        environment.setResultSink(result -> results[0]++);
+        /*Few live events, so request nodes ask again for events they have found*/
+        environment.setRetention(new RetentionPolicy(0, 1200, RetentionPolicy.Eviction.LRU));
+        LocationCache cache = new LocationCache(500, 8);
+        environment.setLocationCache(cache);
+        environment.simulate(40000);
+
+        assertTrue(cache.getHits() > 0, "The cache answered no request");
+        assertTrue(environment.getNumberOfFoundEvents() <= environment.getNumberOfSentRequests(),
+                environment.toString());
+        /*The sink also gets the answers of requests that weren't sent*/
+        assertTrue(environment.getNumberOfFoundEvents() + cache.getHits() <= results[0], environment.toString());
+    }
+}
@@ -0,0 +1,65 @@
+package rumor;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks that the text topology format is read line by line, and that a
+ * malformed line fails with its line number instead of shifting the
+ * coordinates that follow.
+ *
+ * @since 2023-05-25
+ */
+class TopologyFilesTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void readsCoordinatesWithSpacesAndWindowsLineEnds() throws IOException {
+        Topology topology = TopologyFiles.read(write("3\r\n1, 2\r\n -3,4\r\n6,7\r\n"), 15);
+
+        assertEquals(3, topology.size());
+        assertEquals(-3, topology.getPosition(1).getX());
+        assertEquals(7, topology.getPosition(2).getY());
+    }
+
+    @Test
+    void rejectsExtraField() throws IOException {
+        assertLineFails("3\n1,2\n3,4,5\n6,7\n", 3);
+    }
+
+    @Test
+    void rejectsJunkInANumber() throws IOException {
+        assertLineFails("3\n1,2\n3;4x\n6,7\n", 3);
+    }
+
+    @Test
+    void rejectsMissingField() throws IOException {
+        assertLineFails("2\n1,2\n3\n", 3);
+    }
+
+    @Test
+    void rejectsMissingLines() throws IOException {
+        assertLineFails("3\n1,2\n", 3);
+    }
+
+    private void assertLineFails(String text, int line) throws IOException {
+        Path file = write(text);
+        IOException failure = assertThrows(IOException.class, () -> TopologyFiles.read(file, 15));
+        assertTrue(failure.getMessage().contains("line " + line), failure.getMessage());
+    }
+
+    private Path write(String text) throws IOException {
+        Path file = directory.resolve("topology.txt");
+        Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+}